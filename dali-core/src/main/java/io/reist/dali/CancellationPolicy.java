@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+/**
+ * Decides what happens to a download when its request is cancelled, e.g. because a list row
+ * has been recycled. A download which is far enough is finished into the disk cache so that
+ * scrolling back costs only a local decode. The cancelled request itself is never decoded or
+ * transformed.
+ */
+public class CancellationPolicy {
+
+    /**
+     * Aborts every download on cancel
+     */
+    public static final CancellationPolicy ABORT = new CancellationPolicy(Float.POSITIVE_INFINITY, Long.MAX_VALUE);
+
+    private final float minProgress;
+    private final long minBytes;
+
+    /**
+     * @param minProgress   a fraction of the total length (0..1) after which a download is
+     *                      finished; only applies when the server reports the length
+     * @param minBytes      a number of received bytes after which a download is finished
+     */
+    public CancellationPolicy(float minProgress, long minBytes) {
+        this.minProgress = minProgress;
+        this.minBytes = minBytes;
+    }
+
+    /**
+     * @param received      bytes which are already on the disk
+     * @param total         the total length of the resource or a negative value if it's unknown
+     */
+    public boolean shouldFinish(long received, long total) {
+        return received >= minBytes || (total > 0 && received >= minProgress * total);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of Dali runtime statistics
+ */
+@SuppressWarnings("WeakerAccess")
+public class DaliMetrics {
+
+    /**
+     * Bytes held by the bitmaps and placeholder bitmaps of live drawables
+     */
+    public long drawableBytes;
+    public int drawableCount;
+
+    /**
+     * 0 if there's no cap
+     */
+    public long maxDrawableBytes;
+
+    public Map<Object, Long> drawableBytesByAttachTarget = Collections.emptyMap();
+    public Map<String, Long> drawableBytesByHost = Collections.emptyMap();
+
+    /**
+     * 0 if decodes are not limited, see {@link DecodeBudget}
+     */
+    public long decodeBudgetBytes;
+    public long decodeInFlightBytes;
+    public long decodePeakBytes;
+    public int decodeWaiting;
+    public long decodeWaits;
+    public long decodeWaitTime;
+    public long decodeDownsampled;
+
+    /**
+     * Tasks waiting for a thread and tasks being run in each stage, see {@link Pipeline}.
+     * Blocked are the callers waiting for room in a full queue.
+     */
+    public int fetchQueueDepth;
+    public int fetchActive;
+    public int decodeQueueDepth;
+    public int decodeActive;
+    public int decodeBlocked;
+    public int transformQueueDepth;
+    public int transformActive;
+    public int transformBlocked;
+
+    @Override
+    public String toString() {
+        return "DaliMetrics{" +
+                "drawableBytes=" + drawableBytes +
+                ", drawableCount=" + drawableCount +
+                ", maxDrawableBytes=" + maxDrawableBytes +
+                ", drawableBytesByHost=" + drawableBytesByHost +
+                ", decodeBudgetBytes=" + decodeBudgetBytes +
+                ", decodeInFlightBytes=" + decodeInFlightBytes +
+                ", decodePeakBytes=" + decodePeakBytes +
+                ", decodeWaiting=" + decodeWaiting +
+                ", decodeWaits=" + decodeWaits +
+                ", decodeWaitTime=" + decodeWaitTime +
+                ", decodeDownsampled=" + decodeDownsampled +
+                ", fetchQueueDepth=" + fetchQueueDepth +
+                ", fetchActive=" + fetchActive +
+                ", decodeQueueDepth=" + decodeQueueDepth +
+                ", decodeActive=" + decodeActive +
+                ", decodeBlocked=" + decodeBlocked +
+                ", transformQueueDepth=" + transformQueueDepth +
+                ", transformActive=" + transformActive +
+                ", transformBlocked=" + transformBlocked +
+                '}';
+    }
+
+}
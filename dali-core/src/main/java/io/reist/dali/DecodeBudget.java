@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+/**
+ * Limits the total size of bitmaps being decoded at the same time. A decoder estimates
+ * the footprint of a decode from the source dimensions, the sample size and the bitmap config,
+ * and acquires this amount of bytes before decoding. If the budget is exhausted, the decoder
+ * either waits until other decodes release their bytes or, if {@link #isDownsamplingAllowed()},
+ * increases the sample size until the decode fits.
+ *
+ * A decode which doesn't fit the budget on its own is admitted when nothing else is in flight.
+ */
+public class DecodeBudget {
+
+    private final long maxBytes;
+    private final boolean downsamplingAllowed;
+
+    private long inFlightBytes;
+    private long peakBytes;
+    private int waiting;
+
+    private long admitted;
+    private long waits;
+    private long waitTime;
+    private long downsampled;
+
+    public DecodeBudget(long maxBytes, boolean downsamplingAllowed) {
+        this.maxBytes = maxBytes;
+        this.downsamplingAllowed = downsamplingAllowed;
+    }
+
+    public static long estimate(int width, int height, int sampleSize, int bytesPerPixel) {
+        long sampledWidth = (width + sampleSize - 1) / sampleSize;
+        long sampledHeight = (height + sampleSize - 1) / sampleSize;
+        return sampledWidth * sampledHeight * bytesPerPixel;
+    }
+
+    /**
+     * @return true if the bytes have been acquired
+     */
+    public synchronized boolean tryAcquire(long bytes) {
+        if (fits(bytes)) {
+            add(bytes);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Blocks until the bytes can be acquired
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+
+        if (!fits(bytes)) {
+
+            long start = System.currentTimeMillis();
+
+            waiting++;
+            waits++;
+            try {
+                while (!fits(bytes)) {
+                    wait();
+                }
+            } finally {
+                waiting--;
+                waitTime += System.currentTimeMillis() - start;
+            }
+
+        }
+
+        add(bytes);
+
+    }
+
+    public synchronized void release(long bytes) {
+        inFlightBytes -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * Counts a decode which has been downsampled to fit the budget
+     */
+    public synchronized void onDownsampled() {
+        downsampled++;
+    }
+
+    private boolean fits(long bytes) {
+        return inFlightBytes == 0 || inFlightBytes + bytes <= maxBytes;
+    }
+
+    private void add(long bytes) {
+        inFlightBytes += bytes;
+        admitted++;
+        if (inFlightBytes > peakBytes) {
+            peakBytes = inFlightBytes;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isDownsamplingAllowed() {
+        return downsamplingAllowed;
+    }
+
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * @return a number of decodes which are waiting for the budget right now
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * @return a total number of decodes which had to wait for the budget
+     */
+    public synchronized long getWaits() {
+        return waits;
+    }
+
+    /**
+     * @return a total time in milliseconds spent waiting for the budget
+     */
+    public synchronized long getWaitTime() {
+        return waitTime;
+    }
+
+    public synchronized long getDownsampled() {
+        return downsampled;
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A directory of partially downloaded resources. Each resource is stored as a body file and
+ * a meta file which holds the validator (ETag) and the expected total length of the body.
+ * A partial body is only kept if the server provided a strong ETag, so that a later
+ * range request can be validated with If-Range.
+ *
+ * A resource can be written by only one fetcher at a time, see {@link #tryLock(String)}.
+ */
+public class DownloadCache {
+
+    private static final String BODY_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".meta";
+
+    private final File dir;
+    private final long maxSize;
+
+    private final Set<String> locked = new HashSet<>();
+
+    public DownloadCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    @SuppressWarnings("TryWithIdenticalCatches")
+    public String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return true if the caller now exclusively owns the resource until {@link #unlock(String)}
+     */
+    public synchronized boolean tryLock(String key) {
+        return locked.add(key);
+    }
+
+    public synchronized void unlock(String key) {
+        locked.remove(key);
+    }
+
+    public File getBodyFile(String key) {
+        return new File(dir, key + BODY_SUFFIX);
+    }
+
+    /**
+     * @return the stored meta data or null if the resource has no usable partial body
+     */
+    @SuppressWarnings("TryWithIdenticalCatches")
+    public Meta readMeta(String key) {
+
+        File metaFile = new File(dir, key + META_SUFFIX);
+        if (!metaFile.exists() || !getBodyFile(key).exists()) {
+            return null;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(metaFile));
+            String etag = reader.readLine();
+            String length = reader.readLine();
+            if (etag == null || length == null) {
+                return null;
+            }
+            return new Meta(etag, Long.parseLong(length));
+        } catch (IOException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+
+    }
+
+    public void writeMeta(String key, Meta meta) throws IOException {
+
+        ensureDir();
+
+        FileWriter writer = new FileWriter(new File(dir, key + META_SUFFIX));
+        try {
+            writer.write(meta.etag);
+            writer.write('\n');
+            writer.write(Long.toString(meta.length));
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+
+    }
+
+    public void remove(String key) {
+        //noinspection ResultOfMethodCallIgnored
+        getBodyFile(key).delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(dir, key + META_SUFFIX).delete();
+    }
+
+    public void ensureDir() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+    }
+
+    /**
+     * Removes the least recently modified unlocked bodies until the total size of the directory
+     * fits {@link #maxSize}.
+     */
+    public synchronized void trim() {
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+
+        if (size <= maxSize) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+
+        });
+
+        for (File file : files) {
+
+            String name = file.getName();
+            if (!name.endsWith(BODY_SUFFIX)) {
+                continue;
+            }
+
+            String key = name.substring(0, name.length() - BODY_SUFFIX.length());
+            if (locked.contains(key)) {
+                continue;
+            }
+
+            size -= file.length();
+            remove(key);
+
+            if (size <= maxSize) {
+                return;
+            }
+
+        }
+
+    }
+
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    public static class Meta {
+
+        public final String etag;
+
+        /**
+         * The total length of the resource or -1 if the server didn't report it
+         */
+        public final long length;
+
+        public Meta(String etag, long length) {
+            this.etag = etag;
+            this.length = length;
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+/**
+ * Tells when a number of bytes goes above a cap. Once it's reported, the crossing isn't reported
+ * again until the bytes fall below a fraction of the cap, so that caches aren't trimmed on every
+ * load while the usage stays around the cap.
+ */
+public class MemoryCapCrossing {
+
+    public static final float DEFAULT_REARM_RATIO = 0.75f;
+
+    private final float rearmRatio;
+
+    private boolean crossed;
+
+    public MemoryCapCrossing() {
+        this(DEFAULT_REARM_RATIO);
+    }
+
+    /**
+     * @param rearmRatio    a fraction of the cap below which the next crossing is reported
+     */
+    public MemoryCapCrossing(float rearmRatio) {
+        if (rearmRatio <= 0 || rearmRatio > 1) {
+            throw new IllegalArgumentException("rearmRatio must be in (0, 1]");
+        }
+        this.rearmRatio = rearmRatio;
+    }
+
+    /**
+     * @param bytes     the current number of bytes
+     * @param cap       the cap, 0 for no cap
+     * @return true if the bytes have just gone above the cap
+     */
+    public synchronized boolean update(long bytes, long cap) {
+
+        if (cap <= 0) {
+            crossed = false;
+            return false;
+        }
+
+        if (bytes > cap) {
+            if (crossed) {
+                return false;
+            } else {
+                crossed = true;
+                return true;
+            }
+        }
+
+        if (bytes < cap * rearmRatio) {
+            crossed = false;
+        }
+
+        return false;
+
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Counts bytes held by images, in total and broken down by attach target and host. Attach
+ * targets are referenced weakly.
+ */
+public class MemoryLedger {
+
+    private final Map<Object, Long> bytesByAttachTarget = new WeakHashMap<>();
+    private final Map<String, Long> bytesByHost = new HashMap<>();
+
+    private long bytes;
+    private int count;
+
+    public synchronized void add(Object attachTarget, String host, long bytes) {
+        this.bytes += bytes;
+        this.count++;
+        addTo(bytesByAttachTarget, attachTarget, bytes);
+        addTo(bytesByHost, host, bytes);
+    }
+
+    public synchronized void remove(Object attachTarget, String host, long bytes) {
+        this.bytes -= bytes;
+        this.count--;
+        addTo(bytesByAttachTarget, attachTarget, -bytes);
+        addTo(bytesByHost, host, -bytes);
+    }
+
+    private static <K> void addTo(Map<K, Long> map, K key, long bytes) {
+
+        if (key == null) {
+            return;
+        }
+
+        Long old = map.get(key);
+        long sum = old == null ? bytes : old + bytes;
+
+        if (sum > 0) {
+            map.put(key, sum);
+        } else {
+            map.remove(key);
+        }
+
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return a copy of the breakdown
+     */
+    public synchronized Map<Object, Long> getBytesByAttachTarget() {
+        return new HashMap<>(bytesByAttachTarget);
+    }
+
+    /**
+     * @return a copy of the breakdown
+     */
+    public synchronized Map<String, Long> getBytesByHost() {
+        return new HashMap<>(bytesByHost);
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded area for in-flight requests which have lost their targets. A request stays parked
+ * until it's claimed by a new request with the same key, or until it's evicted because there
+ * are more than {@link #maxSize} parked requests or it has been parked for longer than
+ * {@link #maxAge} milliseconds. Evicted requests are passed to an {@link Evictor}.
+ *
+ * @param <T>   a type of parked requests
+ */
+public class ParkingLot<T> {
+
+    private final Map<String, Entry<T>> entries = new LinkedHashMap<>();
+
+    private final int maxSize;
+    private final long maxAge;
+    private final Evictor<T> evictor;
+
+    public ParkingLot(int maxSize, long maxAge, Evictor<T> evictor) {
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.evictor = evictor;
+    }
+
+    /**
+     * Parks a request. A request which has been parked under the same key is evicted.
+     */
+    public void park(String key, T request, long now) {
+
+        List<T> evicted = new ArrayList<>();
+
+        synchronized (this) {
+
+            Entry<T> old = entries.remove(key);
+            if (old != null) {
+                evicted.add(old.request);
+            }
+
+            if (maxSize > 0) {
+                entries.put(key, new Entry<>(request, now));
+            } else {
+                evicted.add(request);
+            }
+
+            trim(now, evicted);
+
+        }
+
+        evict(evicted);
+
+    }
+
+    /**
+     * @return a parked request with the given key, or null if there is none. The returned request
+     *          is not parked anymore.
+     */
+    public T unpark(String key, long now) {
+
+        List<T> evicted = new ArrayList<>();
+        Entry<T> entry;
+
+        synchronized (this) {
+            trim(now, evicted);
+            entry = entries.remove(key);
+        }
+
+        evict(evicted);
+
+        return entry == null ? null : entry.request;
+
+    }
+
+    /**
+     * Removes the given request without eviction, e.g. because it has completed.
+     *
+     * @return true if the request was parked
+     */
+    public synchronized boolean remove(String key, T request) {
+        Entry<T> entry = entries.get(key);
+        if (entry != null && entry.request == request) {
+            entries.remove(key);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Evicts the requests which have been parked for too long
+     */
+    public void trim(long now) {
+        List<T> evicted = new ArrayList<>();
+        synchronized (this) {
+            trim(now, evicted);
+        }
+        evict(evicted);
+    }
+
+    public void evictAll() {
+        List<T> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (Entry<T> entry : entries.values()) {
+                evicted.add(entry.request);
+            }
+            entries.clear();
+        }
+        evict(evicted);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    private void trim(long now, List<T> evicted) {
+        Iterator<Entry<T>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entries.size() > maxSize || now - entry.parkedAt >= maxAge) {
+                iterator.remove();
+                evicted.add(entry.request);
+            } else {
+                // the entries are ordered by parking time, so the rest are younger
+                break;
+            }
+        }
+    }
+
+    private void evict(List<T> evicted) {
+        for (T request : evicted) {
+            evictor.evict(request);
+        }
+    }
+
+    public interface Evictor<T> {
+
+        /**
+         * Called outside of the lot's lock, so it's safe to park or unpark from here
+         */
+        void evict(T request);
+
+    }
+
+    private static class Entry<T> {
+
+        final T request;
+        final long parkedAt;
+
+        Entry(T request, long parkedAt) {
+            this.request = request;
+            this.parkedAt = parkedAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Separate pools for the stages of loading an image: fetching, which mostly waits for
+ * the network and the disk, decoding and transformation, which keep CPUs busy. Slow downloads
+ * don't hold the CPU stages, and a burst of decodes doesn't delay downloads. The queues of
+ * the CPU stages are bounded, so fetching slows down when decoding can't keep up.
+ *
+ * The fetch pool is created by a loader, e.g. Glide creates it when it's initialized, and is
+ * attached with {@link #setFetchExecutor(ThreadPoolExecutor)}.
+ */
+public class Pipeline {
+
+    private final int fetchThreads;
+    private final Stage decodeStage;
+    private final Stage transformStage;
+
+    private volatile ThreadPoolExecutor fetchExecutor;
+
+    public Pipeline(int fetchThreads, Stage decodeStage, Stage transformStage) {
+        this.fetchThreads = fetchThreads;
+        this.decodeStage = decodeStage;
+        this.transformStage = transformStage;
+    }
+
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public Stage getDecodeStage() {
+        return decodeStage;
+    }
+
+    public Stage getTransformStage() {
+        return transformStage;
+    }
+
+    public void setFetchExecutor(ThreadPoolExecutor fetchExecutor) {
+        this.fetchExecutor = fetchExecutor;
+    }
+
+    public ThreadPoolExecutor getFetchExecutor() {
+        return fetchExecutor;
+    }
+
+    public void fill(DaliMetrics metrics) {
+
+        ThreadPoolExecutor fetchExecutor = this.fetchExecutor;
+        if (fetchExecutor != null) {
+            metrics.fetchQueueDepth = fetchExecutor.getQueue().size();
+            metrics.fetchActive = fetchExecutor.getActiveCount();
+        }
+
+        metrics.decodeQueueDepth = decodeStage.getQueueDepth();
+        metrics.decodeActive = decodeStage.getActiveCount();
+        metrics.decodeBlocked = decodeStage.getBlocked();
+
+        metrics.transformQueueDepth = transformStage.getQueueDepth();
+        metrics.transformActive = transformStage.getActiveCount();
+        metrics.transformBlocked = transformStage.getBlocked();
+
+    }
+
+    /**
+     * See {@link Stage#retire()}
+     */
+    public void retire() {
+        decodeStage.retire();
+        transformStage.retire();
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+/**
+ * Places an image of a given size into a target according to a {@link ScaleMode}. The image is
+ * scaled by {@link #scaleX} and {@link #scaleY} and centered in the target. The visible part of
+ * the image occupies the rectangle from ({@link #left}, {@link #top}) to
+ * ({@link #right}, {@link #bottom}) in target coordinates.
+ */
+public class Scaling {
+
+    public float scaleX;
+    public float scaleY;
+
+    /**
+     * A translation of the image which is applied before scaling
+     */
+    public float translateX;
+    public float translateY;
+
+    public float left;
+    public float top;
+    public float right;
+    public float bottom;
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    public Scaling set(
+            ScaleMode scaleMode,
+            float imageWidth,
+            float imageHeight,
+            float targetWidth,
+            float targetHeight
+    ) {
+
+        switch (scaleMode) {
+
+            case CENTER_CROP:
+                if (imageWidth * targetHeight > targetWidth * imageHeight) {
+                    scaleX = targetHeight / imageHeight;
+                } else {
+                    scaleX = targetWidth / imageWidth;
+                }
+                scaleY = scaleX;
+                break;
+
+            case CENTER_INSIDE:
+                if (imageWidth * targetHeight > targetWidth * imageHeight) {
+                    scaleX = targetWidth / imageWidth;
+                } else {
+                    scaleX = targetHeight / imageHeight;
+                }
+                scaleY = scaleX;
+                break;
+
+            case FIT_XY:
+                scaleX = targetWidth / imageWidth;
+                scaleY = targetHeight / imageHeight;
+                break;
+
+            default:
+                throw new IllegalArgumentException("scaleMode = " + scaleMode);
+
+        }
+
+        float targetWidthInImage = targetWidth / scaleX;
+        float targetHeightInImage = targetHeight / scaleY;
+
+        translateX = targetWidthInImage / 2f - imageWidth / 2f;
+        translateY = targetHeightInImage / 2f - imageHeight / 2f;
+
+        float imageWidthInTarget = imageWidth * scaleX;
+        float imageHeightInTarget = imageHeight * scaleY;
+
+        left = targetWidth / 2f - imageWidthInTarget / 2f;
+        top = targetHeight / 2f - imageHeightInTarget / 2f;
+        right = left + imageWidthInTarget;
+        bottom = top + imageHeightInTarget;
+
+        if (left < 0) left = 0;
+        if (top < 0) top = 0;
+        if (right > targetWidth) right = targetWidth;
+        if (bottom > targetHeight) bottom = targetHeight;
+
+        return this;
+
+    }
+
+    /**
+     * @return true if an image is bigger than a target, i.e. scaling it according to the mode
+     *          would make it smaller. For {@link ScaleMode#FIT_XY}, the total number of pixels
+     *          is compared.
+     */
+    public static boolean isScaledDown(
+            ScaleMode scaleMode,
+            int imageWidth,
+            int imageHeight,
+            int targetWidth,
+            int targetHeight
+    ) {
+
+        switch (scaleMode) {
+
+            case CENTER_CROP:
+                // the greater scale is applied
+                return imageWidth > targetWidth && imageHeight > targetHeight;
+
+            case CENTER_INSIDE:
+                // the lesser scale is applied
+                return imageWidth > targetWidth || imageHeight > targetHeight;
+
+            case FIT_XY:
+                return (long) imageWidth * imageHeight > (long) targetWidth * targetHeight;
+
+            default:
+                throw new IllegalArgumentException("scaleMode = " + scaleMode);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.Arrays;
+
+/**
+ * Rounds target sizes up to a few fixed buckets, so that views of nearly the same size share
+ * decoded images in the caches and bitmaps in the pool. The greater dimension is rounded up to
+ * a bucket, the smaller one keeps the aspect ratio rounded up to {@link #ASPECT_STEPS} steps, so
+ * that 312x208 and 312x209 get the same size too. A drawable scales the image to the exact
+ * bounds anyway.
+ */
+public class SizeBucketing {
+
+    /**
+     * The number of steps which the ratio of the smaller dimension to the greater one is rounded
+     * up to
+     */
+    public static final int ASPECT_STEPS = 16;
+
+    /**
+     * Exact sizes are used
+     */
+    public static final SizeBucketing NONE = new SizeBucketing() {
+
+        @Override
+        public int getWidth(int width, int height) {
+            return width;
+        }
+
+        @Override
+        public int getHeight(int width, int height) {
+            return height;
+        }
+
+    };
+
+    /**
+     * The greater dimension is rounded up to a power of two
+     */
+    public static final SizeBucketing POWER_OF_TWO = new SizeBucketing() {
+
+        @Override
+        public int bucket(int size) {
+            if (size <= 0 || size > 1 << 30) {
+                return size;
+            }
+            int bucket = Integer.highestOneBit(size);
+            return bucket == size ? size : bucket << 1;
+        }
+
+    };
+
+    private final int[] ladder;
+
+    /**
+     * @param ladder    allowed sizes of the greater dimension, a size which is greater than
+     *                  every step is kept as is
+     */
+    public SizeBucketing(int... ladder) {
+        this.ladder = ladder.clone();
+        Arrays.sort(this.ladder);
+    }
+
+    /**
+     * @return the smallest bucket which is not less than the size
+     */
+    public int bucket(int size) {
+        if (size <= 0) {
+            return size;
+        }
+        for (int step : ladder) {
+            if (step >= size) {
+                return step;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the bucketed width of a target
+     */
+    public int getWidth(int width, int height) {
+        return bucket(width, height);
+    }
+
+    /**
+     * @return the bucketed height of a target
+     */
+    public int getHeight(int width, int height) {
+        return bucket(height, width);
+    }
+
+    private int bucket(int side, int otherSide) {
+
+        if (side <= 0 || otherSide <= 0) {
+            return side;
+        }
+
+        int size = Math.max(side, otherSide);
+        int bucket = bucket(size);
+        if (side == size) {
+            return bucket;
+        }
+
+        // the ratio is rounded up, so the image is never smaller than the target
+        int steps = (int) Math.ceil((double) side * ASPECT_STEPS / size);
+        return Math.max(1, (int) Math.ceil((double) bucket * steps / ASPECT_STEPS));
+
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stack blur by Mario Klingemann (http://www.quasimondo.com/StackBlurForCanvas) for ARGB pixels.
+ * It's an approximation of the gaussian blur which costs the same for any radius. The image is
+ * blurred horizontally and then vertically, rows and columns of a large image are split
+ * between threads.
+ *
+ * Pixel buffers can be taken from and returned to a small pool, so that repeated blurs of
+ * images of the same size don't allocate.
+ */
+public class StackBlur {
+
+    /**
+     * Smaller images are blurred on the calling thread, a handoff would cost more
+     */
+    private static final int MIN_PARALLEL_PIXELS = 128 * 128;
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    private final List<int[]> buffers = new ArrayList<>();
+
+    /**
+     * @param threads   a number of threads to blur an image with, including the calling thread
+     */
+    public StackBlur(int threads) {
+        this.threads = Math.max(1, threads);
+        if (this.threads > 1) {
+            executor = Executors.newFixedThreadPool(this.threads - 1, new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "dali-blur-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * @return a buffer of at least the given size
+     */
+    public synchronized int[] obtainBuffer(int size) {
+        for (int i = 0; i < buffers.size(); i++) {
+            if (buffers.get(i).length >= size) {
+                return buffers.remove(i);
+            }
+        }
+        return new int[size];
+    }
+
+    public synchronized void releaseBuffer(int[] buffer) {
+        if (buffers.size() >= MAX_POOLED_BUFFERS) {
+            buffers.remove(0);
+        }
+        buffers.add(buffer);
+    }
+
+    /**
+     * Blurs the pixels in place
+     *
+     * @param pixels    ARGB pixels row by row, the array may be longer than width * height
+     * @param radius    a blur radius in pixels, 0 leaves the image as it is
+     */
+    public void blur(
+            final int[] pixels,
+            final int width,
+            final int height,
+            final int radius
+    ) throws InterruptedException {
+
+        if (radius < 1 || width < 1 || height < 1) {
+            return;
+        }
+
+        final int[] buffer = obtainBuffer(width * height);
+
+        try {
+
+            // rows of the source go to the buffer
+            split(height, width * height, new Pass() {
+
+                @Override
+                public void run(int from, int to) {
+                    int[] stack = new int[2 * radius + 1];
+                    for (int y = from; y < to; y++) {
+                        blurLine(pixels, y * width, 1, buffer, y * width, 1, width, radius, stack);
+                    }
+                }
+
+            });
+
+            // columns of the buffer go back to the source
+            split(width, width * height, new Pass() {
+
+                @Override
+                public void run(int from, int to) {
+                    int[] stack = new int[2 * radius + 1];
+                    for (int x = from; x < to; x++) {
+                        blurLine(buffer, x, width, pixels, x, width, height, radius, stack);
+                    }
+                }
+
+            });
+
+        } finally {
+            releaseBuffer(buffer);
+        }
+
+    }
+
+    /**
+     * Runs the pass for [0, count) in chunks, one of them on the calling thread
+     */
+    private void split(int count, int pixels, final Pass pass) throws InterruptedException {
+
+        int chunks = Math.min(threads, Math.max(1, pixels / MIN_PARALLEL_PIXELS));
+        chunks = Math.min(chunks, count);
+
+        if (chunks <= 1) {
+            pass.run(0, count);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        int chunkSize = (count + chunks - 1) / chunks;
+
+        for (int from = chunkSize; from < count; from += chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(count, from + chunkSize);
+            futures.add(executor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    pass.run(chunkFrom, chunkTo);
+                    return null;
+                }
+
+            }));
+        }
+
+        try {
+            pass.run(0, Math.min(count, chunkSize));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+    }
+
+    /**
+     * Blurs a row or a column
+     *
+     * @param stack     a buffer of 2 * radius + 1 pixels
+     */
+    static void blurLine(
+            int[] src,
+            int srcOffset,
+            int srcStride,
+            int[] dst,
+            int dstOffset,
+            int dstStride,
+            int length,
+            int radius,
+            int[] stack
+    ) {
+
+        int div = 2 * radius + 1;
+        int divSum = (radius + 1) * (radius + 1);
+        int last = length - 1;
+
+        int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        int inA = 0, inR = 0, inG = 0, inB = 0;
+        int outA = 0, outR = 0, outG = 0, outB = 0;
+
+        for (int i = -radius; i <= radius; i++) {
+
+            int p = src[srcOffset + Math.min(last, Math.max(i, 0)) * srcStride];
+            stack[i + radius] = p;
+
+            int a = p >>> 24;
+            int r = (p >> 16) & 0xff;
+            int g = (p >> 8) & 0xff;
+            int b = p & 0xff;
+
+            int weight = radius + 1 - Math.abs(i);
+            sumA += a * weight;
+            sumR += r * weight;
+            sumG += g * weight;
+            sumB += b * weight;
+
+            if (i > 0) {
+                inA += a;
+                inR += r;
+                inG += g;
+                inB += b;
+            } else {
+                outA += a;
+                outR += r;
+                outG += g;
+                outB += b;
+            }
+
+        }
+
+        int stackPointer = radius;
+
+        for (int x = 0; x < length; x++) {
+
+            dst[dstOffset + x * dstStride] =
+                    (sumA / divSum) << 24 |
+                    (sumR / divSum) << 16 |
+                    (sumG / divSum) << 8 |
+                    (sumB / divSum);
+
+            sumA -= outA;
+            sumR -= outR;
+            sumG -= outG;
+            sumB -= outB;
+
+            // the pixel which leaves the window is replaced with the one which enters it
+            int index = (stackPointer - radius + div) % div;
+            int p = stack[index];
+
+            outA -= p >>> 24;
+            outR -= (p >> 16) & 0xff;
+            outG -= (p >> 8) & 0xff;
+            outB -= p & 0xff;
+
+            p = src[srcOffset + Math.min(x + radius + 1, last) * srcStride];
+            stack[index] = p;
+
+            inA += p >>> 24;
+            inR += (p >> 16) & 0xff;
+            inG += (p >> 8) & 0xff;
+            inB += p & 0xff;
+
+            sumA += inA;
+            sumR += inR;
+            sumG += inG;
+            sumB += inB;
+
+            stackPointer = (stackPointer + 1) % div;
+            p = stack[stackPointer];
+
+            int a = p >>> 24;
+            int r = (p >> 16) & 0xff;
+            int g = (p >> 8) & 0xff;
+            int b = p & 0xff;
+
+            outA += a;
+            outR += r;
+            outG += g;
+            outB += b;
+
+            inA -= a;
+            inR -= r;
+            inG -= g;
+            inB -= b;
+
+        }
+
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private interface Pass {
+
+        void run(int from, int to);
+
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of threads for one kind of work, e.g. decoding. A caller hands a task over to the pool
+ * and waits for its result. The queue of the pool is bounded, so a caller waits for room if
+ * it's full. A burst of work in a previous stage is held there instead of piling up here.
+ *
+ * If the caller is interrupted, the task is interrupted too.
+ */
+public class Stage {
+
+    /**
+     * Seconds which threads of a retired stage wait for more work before ending
+     */
+    private static final long RETIRED_KEEP_ALIVE = 10;
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger blocked = new AtomicInteger();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    private long blocks;
+
+    public Stage(String name, int threads, int queueCapacity) {
+        this(name, threads, queueCapacity, new DaemonThreadFactory(name));
+    }
+
+    public Stage(String name, int threads, int queueCapacity, ThreadFactory threadFactory) {
+
+        this.name = name;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+
+        // the queue itself enforces the capacity, a task which doesn't fit waits in the caller
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ?
+                new ArrayBlockingQueue<Runnable>(queueCapacity) :
+                new SynchronousQueue<Runnable>();
+
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0,
+                TimeUnit.MILLISECONDS,
+                queue,
+                threadFactory,
+                new RejectedExecutionHandler() {
+
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        waitForRoom(r, executor);
+                    }
+
+                }
+        );
+
+    }
+
+    /**
+     * Runs the task in the pool and waits for it to complete
+     *
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw e;
+        }
+
+        int queueDepth = executor.getQueue().size();
+        int peak;
+        do {
+            peak = peakQueueDepth.get();
+        } while (queueDepth > peak && !peakQueueDepth.compareAndSet(peak, queueDepth));
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw e;
+            }
+        }
+
+    }
+
+    /**
+     * Called on the caller's thread when the queue is full
+     */
+    private void waitForRoom(Runnable r, ThreadPoolExecutor executor) {
+
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException(name + " is shut down");
+        }
+
+        blocked.incrementAndGet();
+        synchronized (this) {
+            blocks++;
+        }
+
+        try {
+            executor.getQueue().put(r);
+        } catch (InterruptedException e) {
+            throw new RejectedExecutionException(e);
+        } finally {
+            blocked.decrementAndGet();
+        }
+
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Lets the stage go without failing calls which still hold it, e.g. the ones of requests
+     * which have started before the stage was replaced. Calls are run as before, and the threads
+     * end once they have been idle for a while.
+     */
+    public void retire() {
+        executor.setKeepAliveTime(RETIRED_KEEP_ALIVE, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return a number of tasks waiting for a thread right now
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * @return a number of tasks being run right now
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return a number of callers waiting for room in the queue right now
+     */
+    public int getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * @return a total number of calls which had to wait for room in the queue
+     */
+    public synchronized long getBlocks() {
+        return blocks;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "dali-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
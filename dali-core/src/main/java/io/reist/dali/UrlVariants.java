@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Versions of an image which a server provides in several widths. Either the versions are listed
+ * with {@link #put(int, String)} or a url is a template with {@link #WIDTH} and {@link #HEIGHT}
+ * placeholders which are replaced with a target size.
+ */
+public class UrlVariants {
+
+    public static final String WIDTH = "{w}";
+    public static final String HEIGHT = "{h}";
+
+    private final TreeMap<Integer, String> urls = new TreeMap<>();
+
+    public UrlVariants put(int width, String url) {
+        urls.put(width, url);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return urls.isEmpty();
+    }
+
+    /**
+     * @return the url of the narrowest variant which is at least as wide as the target or, if
+     *          there's no such variant, the fallback url; the widest variant is used when
+     *          the target width is unknown and there's no fallback
+     */
+    public String choose(int targetWidth, String fallback) {
+
+        if (targetWidth > 0) {
+            Map.Entry<Integer, String> variant = urls.ceilingEntry(targetWidth);
+            if (variant != null) {
+                return variant.getValue();
+            }
+        }
+
+        if (fallback != null || urls.isEmpty()) {
+            return fallback;
+        }
+
+        return urls.lastEntry().getValue();
+
+    }
+
+    public UrlVariants copy() {
+        UrlVariants copy = new UrlVariants();
+        copy.urls.putAll(urls);
+        return copy;
+    }
+
+    public static boolean isTemplate(String url) {
+        return url != null && (url.contains(WIDTH) || url.contains(HEIGHT));
+    }
+
+    /**
+     * @return the template with the placeholders replaced or null if the size is unknown
+     */
+    public static String expand(String template, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        return template
+                .replace(WIDTH, Integer.toString(width))
+                .replace(HEIGHT, Integer.toString(height));
+    }
+
+}
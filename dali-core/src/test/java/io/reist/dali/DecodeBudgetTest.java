@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DecodeBudgetTest {
+
+    private static final long MAX_BYTES = 1000;
+
+    @Test
+    public void estimate() {
+        Assert.assertEquals(100 * 50 * 4, DecodeBudget.estimate(100, 50, 1, 4));
+        Assert.assertEquals(50 * 25 * 2, DecodeBudget.estimate(100, 50, 2, 2));
+        Assert.assertEquals(34 * 17 * 4, DecodeBudget.estimate(101, 51, 3, 4));
+    }
+
+    @Test
+    public void tryAcquire() {
+
+        DecodeBudget budget = new DecodeBudget(MAX_BYTES, true);
+
+        Assert.assertTrue(budget.tryAcquire(600));
+        Assert.assertFalse(budget.tryAcquire(600));
+        Assert.assertTrue(budget.tryAcquire(400));
+        Assert.assertEquals(MAX_BYTES, budget.getInFlightBytes());
+
+        budget.release(600);
+        budget.release(400);
+        Assert.assertEquals(0, budget.getInFlightBytes());
+        Assert.assertEquals(MAX_BYTES, budget.getPeakBytes());
+        Assert.assertEquals(2, budget.getAdmitted());
+
+    }
+
+    @Test
+    public void admitsOversizedDecodeAlone() {
+        DecodeBudget budget = new DecodeBudget(MAX_BYTES, false);
+        Assert.assertTrue(budget.tryAcquire(MAX_BYTES * 10));
+        Assert.assertFalse(budget.tryAcquire(1));
+    }
+
+    @Test
+    public void waitsForRelease() throws InterruptedException {
+
+        final DecodeBudget budget = new DecodeBudget(MAX_BYTES, false);
+        budget.acquire(800);
+
+        final CountDownLatch admitted = new CountDownLatch(1);
+        new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    budget.acquire(800);
+                    admitted.countDown();
+                } catch (InterruptedException ignored) {}
+            }
+
+        }.start();
+
+        Assert.assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, budget.getWaiting());
+
+        budget.release(800);
+
+        Assert.assertTrue(admitted.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(800, budget.getInFlightBytes());
+        Assert.assertEquals(0, budget.getWaiting());
+        Assert.assertEquals(1, budget.getWaits());
+        Assert.assertTrue(budget.getWaitTime() > 0);
+
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryCapCrossingTest {
+
+    @Test
+    public void reportsOncePerCrossing() {
+
+        MemoryCapCrossing crossing = new MemoryCapCrossing(0.5f);
+
+        Assert.assertFalse(crossing.update(90, 100));
+        Assert.assertTrue(crossing.update(110, 100));
+
+        // hovering around the cap
+        Assert.assertFalse(crossing.update(120, 100));
+        Assert.assertFalse(crossing.update(80, 100));
+        Assert.assertFalse(crossing.update(110, 100));
+
+        // falling below the rearm ratio
+        Assert.assertFalse(crossing.update(40, 100));
+        Assert.assertTrue(crossing.update(110, 100));
+
+    }
+
+    @Test
+    public void ignoresNoCap() {
+
+        MemoryCapCrossing crossing = new MemoryCapCrossing();
+
+        Assert.assertFalse(crossing.update(110, 0));
+        Assert.assertFalse(crossing.update(110, 0));
+
+        // setting a cap reports the usage which is already above it
+        Assert.assertTrue(crossing.update(110, 100));
+
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryLedgerTest {
+
+    @Test
+    public void breakdown() {
+
+        Object screen1 = new Object();
+        Object screen2 = new Object();
+
+        MemoryLedger ledger = new MemoryLedger();
+        ledger.add(screen1, "a.com", 100);
+        ledger.add(screen1, "b.com", 50);
+        ledger.add(screen2, "a.com", 10);
+
+        Assert.assertEquals(160, ledger.getBytes());
+        Assert.assertEquals(3, ledger.getCount());
+        Assert.assertEquals(Long.valueOf(150), ledger.getBytesByAttachTarget().get(screen1));
+        Assert.assertEquals(Long.valueOf(110), ledger.getBytesByHost().get("a.com"));
+
+        ledger.remove(screen1, "b.com", 50);
+        ledger.remove(screen2, "a.com", 10);
+
+        Assert.assertEquals(100, ledger.getBytes());
+        Assert.assertFalse(ledger.getBytesByAttachTarget().containsKey(screen2));
+        Assert.assertFalse(ledger.getBytesByHost().containsKey("b.com"));
+
+    }
+
+    @Test
+    public void unknownKeys() {
+        MemoryLedger ledger = new MemoryLedger();
+        ledger.add(null, null, 100);
+        Assert.assertEquals(100, ledger.getBytes());
+        Assert.assertTrue(ledger.getBytesByAttachTarget().isEmpty());
+        Assert.assertTrue(ledger.getBytesByHost().isEmpty());
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ParkingLotTest {
+
+    private static final int MAX_SIZE = 2;
+    private static final long MAX_AGE = 100;
+
+    private final List<String> evicted = new ArrayList<>();
+
+    private ParkingLot<String> parkingLot;
+
+    @Before
+    public void setUp() {
+        evicted.clear();
+        parkingLot = new ParkingLot<>(MAX_SIZE, MAX_AGE, new ParkingLot.Evictor<String>() {
+
+            @Override
+            public void evict(String request) {
+                evicted.add(request);
+            }
+
+        });
+    }
+
+    @Test
+    public void reattach() {
+        parkingLot.park("a", "request a", 0);
+        Assert.assertEquals("request a", parkingLot.unpark("a", 10));
+        Assert.assertNull(parkingLot.unpark("a", 10));
+        Assert.assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void evictOldestWhenFull() {
+        parkingLot.park("a", "request a", 0);
+        parkingLot.park("b", "request b", 1);
+        parkingLot.park("c", "request c", 2);
+        Assert.assertEquals(Arrays.asList("request a"), evicted);
+        Assert.assertEquals(MAX_SIZE, parkingLot.size());
+    }
+
+    @Test
+    public void evictExpired() {
+        parkingLot.park("a", "request a", 0);
+        parkingLot.park("b", "request b", 50);
+        parkingLot.trim(MAX_AGE);
+        Assert.assertEquals(Arrays.asList("request a"), evicted);
+        Assert.assertNull(parkingLot.unpark("b", 50 + MAX_AGE));
+        Assert.assertEquals(Arrays.asList("request a", "request b"), evicted);
+    }
+
+    @Test
+    public void replaceSameKey() {
+        parkingLot.park("a", "request a1", 0);
+        parkingLot.park("a", "request a2", 1);
+        Assert.assertEquals(Arrays.asList("request a1"), evicted);
+        Assert.assertEquals("request a2", parkingLot.unpark("a", 2));
+    }
+
+    @Test
+    public void removeCompleted() {
+        parkingLot.park("a", "request a", 0);
+        Assert.assertFalse(parkingLot.remove("a", "request b"));
+        Assert.assertTrue(parkingLot.remove("a", "request a"));
+        Assert.assertEquals(0, parkingLot.size());
+        Assert.assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void disabled() {
+        ParkingLot<String> disabled = new ParkingLot<>(0, MAX_AGE, new ParkingLot.Evictor<String>() {
+
+            @Override
+            public void evict(String request) {
+                evicted.add(request);
+            }
+
+        });
+        disabled.park("a", "request a", 0);
+        Assert.assertEquals(Arrays.asList("request a"), evicted);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScalingTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void centerCrop() {
+
+        Scaling scaling = new Scaling().set(ScaleMode.CENTER_CROP, 200, 100, 50, 50);
+
+        Assert.assertEquals(0.5f, scaling.scaleX, DELTA);
+        Assert.assertEquals(0.5f, scaling.scaleY, DELTA);
+        Assert.assertEquals(-50f, scaling.translateX, DELTA);
+        Assert.assertEquals(0f, scaling.translateY, DELTA);
+        assertRect(scaling, 0, 0, 50, 50);
+
+    }
+
+    @Test
+    public void centerInside() {
+
+        Scaling scaling = new Scaling().set(ScaleMode.CENTER_INSIDE, 200, 100, 50, 50);
+
+        Assert.assertEquals(0.25f, scaling.scaleX, DELTA);
+        Assert.assertEquals(0.25f, scaling.scaleY, DELTA);
+        Assert.assertEquals(0f, scaling.translateX, DELTA);
+        Assert.assertEquals(50f, scaling.translateY, DELTA);
+        assertRect(scaling, 0, 12.5f, 50, 37.5f);
+
+    }
+
+    @Test
+    public void fitXY() {
+
+        Scaling scaling = new Scaling().set(ScaleMode.FIT_XY, 200, 100, 50, 50);
+
+        Assert.assertEquals(0.25f, scaling.scaleX, DELTA);
+        Assert.assertEquals(0.5f, scaling.scaleY, DELTA);
+        assertRect(scaling, 0, 0, 50, 50);
+
+    }
+
+    @Test
+    public void isScaledDown() {
+
+        Assert.assertFalse(Scaling.isScaledDown(ScaleMode.CENTER_CROP, 200, 40, 50, 50));
+        Assert.assertTrue(Scaling.isScaledDown(ScaleMode.CENTER_CROP, 200, 100, 50, 50));
+
+        Assert.assertTrue(Scaling.isScaledDown(ScaleMode.CENTER_INSIDE, 200, 40, 50, 50));
+        Assert.assertFalse(Scaling.isScaledDown(ScaleMode.CENTER_INSIDE, 50, 40, 50, 50));
+
+        Assert.assertTrue(Scaling.isScaledDown(ScaleMode.FIT_XY, 200, 40, 50, 50));
+        Assert.assertFalse(Scaling.isScaledDown(ScaleMode.FIT_XY, 100, 20, 50, 50));
+
+    }
+
+    private static void assertRect(Scaling scaling, float left, float top, float right, float bottom) {
+        Assert.assertEquals(left, scaling.left, DELTA);
+        Assert.assertEquals(top, scaling.top, DELTA);
+        Assert.assertEquals(right, scaling.right, DELTA);
+        Assert.assertEquals(bottom, scaling.bottom, DELTA);
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SizeBucketingTest {
+
+    private static final SizeBucketing LADDER = new SizeBucketing(128, 256, 384, 512, 768, 1024);
+
+    @Test
+    public void none() {
+        Assert.assertEquals(312, SizeBucketing.NONE.bucket(312));
+        Assert.assertEquals(312, SizeBucketing.NONE.getWidth(312, 209));
+        Assert.assertEquals(209, SizeBucketing.NONE.getHeight(312, 209));
+    }
+
+    @Test
+    public void powerOfTwo() {
+        Assert.assertEquals(512, SizeBucketing.POWER_OF_TWO.bucket(312));
+        Assert.assertEquals(512, SizeBucketing.POWER_OF_TWO.bucket(512));
+        Assert.assertEquals(1, SizeBucketing.POWER_OF_TWO.bucket(1));
+        Assert.assertEquals(0, SizeBucketing.POWER_OF_TWO.bucket(0));
+    }
+
+    @Test
+    public void ladder() {
+        Assert.assertEquals(128, LADDER.bucket(1));
+        Assert.assertEquals(384, LADDER.bucket(312));
+        Assert.assertEquals(384, LADDER.bucket(384));
+        Assert.assertEquals(2000, LADDER.bucket(2000));
+    }
+
+    @Test
+    public void keepsAspectRatio() {
+
+        // 2/3 is rounded up to 11/16
+        Assert.assertEquals(384, LADDER.getWidth(312, 208));
+        Assert.assertEquals(264, LADDER.getHeight(312, 208));
+
+        // the smaller dimension is bucketed too
+        Assert.assertEquals(384, LADDER.getWidth(312, 209));
+        Assert.assertEquals(264, LADDER.getHeight(312, 209));
+        Assert.assertEquals(384, LADDER.getWidth(316, 211));
+        Assert.assertEquals(264, LADDER.getHeight(316, 211));
+
+        // portrait
+        Assert.assertEquals(264, LADDER.getWidth(209, 312));
+        Assert.assertEquals(384, LADDER.getHeight(209, 312));
+
+        Assert.assertEquals(384, LADDER.getWidth(312, 312));
+        Assert.assertEquals(384, LADDER.getHeight(312, 312));
+
+    }
+
+    @Test
+    public void neverShrinks() {
+        for (int width = 1; width <= 1100; width += 7) {
+            for (int height = 1; height <= 1100; height += 11) {
+                Assert.assertTrue(LADDER.getWidth(width, height) >= width);
+                Assert.assertTrue(LADDER.getHeight(width, height) >= height);
+            }
+        }
+    }
+
+}
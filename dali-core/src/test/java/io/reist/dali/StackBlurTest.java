@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class StackBlurTest {
+
+    @Test
+    public void keepsUniformImage() throws Exception {
+
+        int[] pixels = new int[32 * 24];
+        Arrays.fill(pixels, 0xff336699);
+
+        StackBlur stackBlur = new StackBlur(1);
+        stackBlur.blur(pixels, 32, 24, 5);
+        stackBlur.shutdown();
+
+        for (int pixel : pixels) {
+            Assert.assertEquals(0xff336699, pixel);
+        }
+
+    }
+
+    @Test
+    public void spreadsPointSymmetrically() throws Exception {
+
+        int size = 21;
+        int center = size / 2;
+
+        int[] pixels = new int[size * size];
+        Arrays.fill(pixels, 0xff000000);
+        pixels[center * size + center] = 0xffffffff;
+
+        StackBlur stackBlur = new StackBlur(1);
+        stackBlur.blur(pixels, size, size, 3);
+        stackBlur.shutdown();
+
+        int peak = pixels[center * size + center] & 0xff;
+        Assert.assertTrue(peak > 0 && peak < 0xff);
+
+        for (int d = 1; d <= 3; d++) {
+            int right = pixels[center * size + center + d];
+            Assert.assertEquals(right, pixels[center * size + center - d]);
+            Assert.assertEquals(right, pixels[(center + d) * size + center]);
+            Assert.assertEquals(right, pixels[(center - d) * size + center]);
+            Assert.assertTrue((right & 0xff) <= peak);
+        }
+
+        // nothing goes beyond the radius
+        Assert.assertEquals(0xff000000, pixels[center * size + center + 4]);
+        Assert.assertEquals(0xff000000, pixels[0]);
+
+    }
+
+    @Test
+    public void parallelEqualsSequential() throws Exception {
+
+        int width = 400;
+        int height = 300;
+
+        int[] pixels = new int[width * height];
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        int[] copy = Arrays.copyOf(pixels, pixels.length);
+
+        StackBlur sequential = new StackBlur(1);
+        sequential.blur(pixels, width, height, 8);
+        sequential.shutdown();
+
+        StackBlur parallel = new StackBlur(4);
+        parallel.blur(copy, width, height, 8);
+        parallel.shutdown();
+
+        Assert.assertArrayEquals(pixels, copy);
+
+    }
+
+    @Test
+    public void reusesBuffers() {
+
+        StackBlur stackBlur = new StackBlur(1);
+
+        int[] buffer = stackBlur.obtainBuffer(100);
+        stackBlur.releaseBuffer(buffer);
+
+        Assert.assertSame(buffer, stackBlur.obtainBuffer(50));
+        Assert.assertNotSame(buffer, stackBlur.obtainBuffer(50));
+
+        stackBlur.shutdown();
+
+    }
+
+}
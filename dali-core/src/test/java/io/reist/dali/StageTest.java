@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StageTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @Test
+    public void returnsResult() throws Exception {
+
+        Stage stage = new Stage("test", 1, 1);
+
+        Assert.assertEquals("result", stage.call(new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+
+        }));
+
+        stage.shutdown();
+
+    }
+
+    @Test
+    public void runsCallsAfterRetirement() throws Exception {
+
+        Stage stage = new Stage("test", 1, 1);
+        stage.retire();
+
+        // a request which has started before the stage was replaced still holds it
+        Assert.assertEquals("result", stage.call(new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+
+        }));
+
+        stage.shutdown();
+
+    }
+
+    @Test(expected = IOException.class)
+    public void rethrowsException() throws Exception {
+
+        Stage stage = new Stage("test", 1, 1);
+
+        try {
+            stage.call(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    throw new IOException();
+                }
+
+            });
+        } finally {
+            stage.shutdown();
+        }
+
+    }
+
+    @Test
+    public void blocksWhenFull() throws Exception {
+
+        // one running and one queued task fill the stage
+        final Stage stage = new Stage("test", 1, 1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger completed = new AtomicInteger();
+
+        final Callable<Object> task = new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                release.await();
+                completed.incrementAndGet();
+                return null;
+            }
+
+        };
+
+        Thread[] callers = new Thread[3];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        stage.call(task);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+            });
+            callers[i].start();
+            waitFor(stage, i);
+        }
+
+        Assert.assertEquals(1, stage.getActiveCount());
+        Assert.assertEquals(1, stage.getQueueDepth());
+        Assert.assertEquals(1, stage.getBlocked());
+        Assert.assertEquals(1, stage.getBlocks());
+
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join(TIMEOUT);
+        }
+
+        Assert.assertEquals(callers.length, completed.get());
+        Assert.assertEquals(0, stage.getBlocked());
+        Assert.assertEquals(1, stage.getPeakQueueDepth());
+
+        stage.shutdown();
+
+    }
+
+    @Test
+    public void interruptsTask() throws Exception {
+
+        final Stage stage = new Stage("test", 1, 1);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        Thread caller = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    stage.call(new Callable<Object>() {
+
+                        @Override
+                        public Object call() throws Exception {
+                            started.countDown();
+                            try {
+                                Thread.sleep(TIMEOUT);
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                            }
+                            return null;
+                        }
+
+                    });
+                } catch (Exception ignored) {}
+            }
+
+        });
+        caller.start();
+
+        Assert.assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        caller.interrupt();
+        Assert.assertTrue(interrupted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        stage.shutdown();
+
+    }
+
+    /**
+     * Waits until the i-th caller has got to the stage
+     */
+    private static void waitFor(Stage stage, int i) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (stage.getActiveCount() + stage.getQueueDepth() + stage.getBlocked() <= i &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UrlVariantsTest {
+
+    private final UrlVariants variants = new UrlVariants()
+            .put(640, "640.jpg")
+            .put(160, "160.jpg")
+            .put(320, "320.jpg");
+
+    @Test
+    public void choosesNarrowestCoveringVariant() {
+        Assert.assertEquals("160.jpg", variants.choose(120, "original.jpg"));
+        Assert.assertEquals("320.jpg", variants.choose(161, "original.jpg"));
+        Assert.assertEquals("640.jpg", variants.choose(640, "original.jpg"));
+    }
+
+    @Test
+    public void fallsBack() {
+        Assert.assertEquals("original.jpg", variants.choose(1000, "original.jpg"));
+        Assert.assertEquals("original.jpg", variants.choose(0, "original.jpg"));
+        Assert.assertEquals("640.jpg", variants.choose(0, null));
+        Assert.assertNull(new UrlVariants().choose(100, null));
+    }
+
+    @Test
+    public void expandsTemplate() {
+
+        String template = "http://cdn/image.jpg?w={w}&h={h}";
+
+        Assert.assertTrue(UrlVariants.isTemplate(template));
+        Assert.assertFalse(UrlVariants.isTemplate("http://cdn/image.jpg"));
+        Assert.assertFalse(UrlVariants.isTemplate(null));
+
+        Assert.assertEquals("http://cdn/image.jpg?w=120&h=80", UrlVariants.expand(template, 120, 80));
+        Assert.assertNull(UrlVariants.expand(template, 0, 80));
+
+    }
+
+}
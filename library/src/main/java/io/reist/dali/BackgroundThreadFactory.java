@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads which run at the background priority, so that CPU bound stages
+ * don't compete with the main thread
+ */
+class BackgroundThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    BackgroundThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(@NonNull final Runnable r) {
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }
+
+        }, "dali-" + name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A reference counted bitmap. The bitmap stays valid until the handle is released as many times
+ * as it has been retained plus one. After the final release, the bitmap is given back to
+ * the loader and must not be used anymore.
+ *
+ * If Dali is debuggable (see {@link Dali#setDebuggable(boolean)}), handles which are collected
+ * without the final release are logged with the stack trace of their creation.
+ */
+public class BitmapHandle {
+
+    private static final String TAG = BitmapHandle.class.getName();
+
+    private static final ReferenceQueue<BitmapHandle> LEAK_QUEUE = new ReferenceQueue<>();
+
+    /**
+     * Keeps the references themselves from being collected before they are enqueued
+     */
+    private static final Set<LeakReference> LEAK_REFERENCES =
+            Collections.synchronizedSet(new HashSet<LeakReference>());
+
+    private final Bitmap bitmap;
+    private final Runnable onRelease;
+    private final LeakReference leakReference;
+
+    private int refCount = 1;
+
+    /**
+     * @param onRelease     called on the final release on the releasing thread, null if
+     *                      the bitmap is owned by somebody else
+     */
+    public BitmapHandle(@NonNull Bitmap bitmap, @Nullable Runnable onRelease) {
+
+        this.bitmap = bitmap;
+        this.onRelease = onRelease;
+
+        if (DaliLoader.getInstance().isDebuggable()) {
+            reportLeaks();
+            leakReference = new LeakReference(this, new Throwable("Acquired here"));
+            LEAK_REFERENCES.add(leakReference);
+        } else {
+            leakReference = null;
+        }
+
+    }
+
+    /**
+     * @throws IllegalStateException    if the handle has been fully released
+     */
+    @NonNull
+    public synchronized Bitmap getBitmap() {
+        checkNotReleased();
+        return bitmap;
+    }
+
+    /**
+     * @return this handle
+     */
+    @NonNull
+    public synchronized BitmapHandle retain() {
+        checkNotReleased();
+        refCount++;
+        return this;
+    }
+
+    public void release() {
+
+        synchronized (this) {
+            checkNotReleased();
+            refCount--;
+            if (refCount > 0) {
+                return;
+            }
+        }
+
+        if (leakReference != null) {
+            LEAK_REFERENCES.remove(leakReference);
+        }
+
+        if (onRelease != null) {
+            onRelease.run();
+        }
+
+    }
+
+    public synchronized boolean isReleased() {
+        return refCount <= 0;
+    }
+
+    private void checkNotReleased() {
+        if (refCount <= 0) {
+            throw new IllegalStateException("The handle has been released");
+        }
+    }
+
+    private static void reportLeaks() {
+        LeakReference reference;
+        while ((reference = (LeakReference) LEAK_QUEUE.poll()) != null) {
+            if (LEAK_REFERENCES.remove(reference)) {
+                Log.w(TAG, "A bitmap handle hasn't been released", reference.acquisition);
+            }
+        }
+    }
+
+    private static class LeakReference extends WeakReference<BitmapHandle> {
+
+        final Throwable acquisition;
+
+        LeakReference(BitmapHandle handle, Throwable acquisition) {
+            super(handle, LEAK_QUEUE);
+            this.acquisition = acquisition;
+        }
+
+    }
+
+}
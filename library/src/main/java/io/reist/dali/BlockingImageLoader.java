@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An {@link ImageLoader} which is also able to load images synchronously. Loaders which don't
+ * implement it are used via {@link ImageRequest#submit()}.
+ */
+public interface BlockingImageLoader extends ImageLoader {
+
+    /**
+     * Loads an image blocking the calling thread. If the request has no target size,
+     * the image is loaded in its original size.
+     *
+     * @param request       a request to use
+     */
+    @WorkerThread
+    @NonNull
+    Bitmap get(@NonNull ImageRequest request) throws InterruptedException, ExecutionException;
+
+}
@@ -20,6 +20,8 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.util.Log;
 import android.view.View;
 
@@ -122,6 +124,176 @@ public class Dali {
         DaliLoader.getInstance().setDebuggable(debuggable);
     }
 
+    /**
+     * Sets what happens to downloads of cancelled requests. By default, they are aborted.
+     *
+     * @see CancellationPolicy
+     */
+    @SuppressWarnings("unused")
+    public static void setCancellationPolicy(@NonNull CancellationPolicy cancellationPolicy) {
+        DaliLoader.getInstance().setCancellationPolicy(cancellationPolicy);
+    }
+
+    /**
+     * Rounds target sizes up to buckets, so that views of slightly different sizes share cached
+     * images. Exact sizes are used by default.
+     *
+     * @see SizeBucketing
+     */
+    @SuppressWarnings("unused")
+    public static void setSizeBucketing(@NonNull SizeBucketing sizeBucketing) {
+        DaliLoader.getInstance().setSizeBucketing(sizeBucketing);
+    }
+
+    /**
+     * Drawables follow size changes of their views without reloading. If a view grows so much
+     * that the bitmap is stretched by more than the given factor, e.g. an expanded card, the image
+     * is loaded again in the new size. The default factor is 1.5.
+     *
+     * @param upgradeFactor     0 or less to never reload
+     */
+    @SuppressWarnings("unused")
+    public static void setUpgradeFactor(float upgradeFactor) {
+        DaliLoader.getInstance().setUpgradeFactor(upgradeFactor);
+    }
+
+    /**
+     * Lets requests of recycled views run for a while instead of cancelling them immediately.
+     * If a view is bound to the same image again, e.g. when a list is scrolled back, the parked
+     * request is picked up instead of starting from scratch. Parking is disabled by default.
+     *
+     * @param maxRequests   a maximum number of parked requests, the oldest ones are cancelled
+     *                      first; 0 disables parking
+     * @param maxTime       a time in milliseconds after which a parked request is cancelled
+     */
+    @SuppressWarnings("unused")
+    public static void setParking(int maxRequests, long maxTime) {
+        DaliLoader.getInstance().setParking(maxRequests, maxTime);
+    }
+
+    /**
+     * Pauses all loads into views. Views requested while paused get their placeholders
+     * immediately, and the loads are started by {@link #resume()}. Only the latest request
+     * is kept for each view.
+     *
+     * @see DaliScrollListener
+     */
+    @SuppressWarnings("unused")
+    public static void pause() {
+        DaliLoader.getInstance().pause(null);
+    }
+
+    /**
+     * Pauses loads into views which are requested via {@link #with(Context)} and similar methods
+     * with the given attach target
+     */
+    @SuppressWarnings("unused")
+    public static void pause(@NonNull Object attachTarget) {
+        DaliLoader.getInstance().pause(attachTarget);
+    }
+
+    /**
+     * Starts loads requested while paused. Loads of attach targets which have been paused via
+     * {@link #pause(Object)} stay paused.
+     */
+    @SuppressWarnings("unused")
+    public static void resume() {
+        DaliLoader.getInstance().resume(null);
+    }
+
+    @SuppressWarnings("unused")
+    public static void resume(@NonNull Object attachTarget) {
+        DaliLoader.getInstance().resume(attachTarget);
+    }
+
+    /**
+     * Limits the total size of bitmaps being decoded at the same time. Decodes which don't fit
+     * the budget wait for the running ones or, if downsampling is allowed, get decoded with
+     * a greater sample size. There's no limit by default.
+     *
+     * @param maxBytes      a maximum number of bytes allocated by running decodes;
+     *                      0 removes the limit
+     * @param downsample    true to decode at a lower resolution instead of waiting
+     * @see #getDecodeBudget()
+     */
+    @SuppressWarnings("unused")
+    public static void setDecodeBudget(long maxBytes, boolean downsample) {
+        DaliLoader.getInstance().setDecodeBudget(maxBytes > 0 ? new DecodeBudget(maxBytes, downsample) : null);
+    }
+
+    /**
+     * @return the current decode budget, or null if decodes are not limited
+     * @see #getMetrics()
+     */
+    @Nullable
+    @SuppressWarnings("unused")
+    public static DecodeBudget getDecodeBudget() {
+        return DaliLoader.getInstance().getDecodeBudget();
+    }
+
+    /**
+     * Runs fetching, decoding and transformation in pools of their own, so that slow downloads
+     * and CPU bound work don't hold each other. The decode and transform pools run at
+     * the background priority and have bounded queues. When they are full, fetching waits.
+     * Glide takes the fetch pool when it's initialized, so it should be called before
+     * the first load or {@link #warmUp(Context)}; a later call replaces only the CPU pools.
+     * Requests which have already started finish on the pools they have. Loaders use their own
+     * pools by default.
+     *
+     * @param fetchThreads      threads waiting for the network and the disk
+     * @param cpuThreads        threads of the decode pool and of the transform pool, e.g.
+     *                          the number of cores; 0 removes the pipeline
+     * @param queueSize         a number of tasks which may wait for a thread in each CPU pool
+     * @see DaliMetrics#decodeQueueDepth
+     */
+    @SuppressWarnings("unused")
+    public static void setPipeline(int fetchThreads, int cpuThreads, int queueSize) {
+        Pipeline pipeline = null;
+        if (cpuThreads > 0) {
+            pipeline = new Pipeline(
+                    fetchThreads,
+                    new Stage("decode", cpuThreads, queueSize, new BackgroundThreadFactory("decode")),
+                    new Stage("transform", cpuThreads, queueSize, new BackgroundThreadFactory("transform"))
+            );
+        }
+        DaliLoader.getInstance().setPipeline(pipeline);
+    }
+
+    /**
+     * Caps the memory held by the bitmaps of drawables which Dali has created and which have
+     * not been garbage collected yet. Above the cap, new images are loaded in low quality, and
+     * the main loader trims its memory caches once per crossing. There's no cap by default.
+     *
+     * @param maxBytes      a maximum number of bytes; 0 removes the cap
+     */
+    @SuppressWarnings("unused")
+    public static void setMemoryCap(long maxBytes) {
+        DaliLoader.getInstance().setMemoryCap(maxBytes);
+    }
+
+    /**
+     * @return a snapshot of memory and decoding statistics
+     */
+    @NonNull
+    @SuppressWarnings("unused")
+    public static DaliMetrics getMetrics() {
+        return DaliLoader.getInstance().getMetrics();
+    }
+
+    /**
+     * Initializes loaders ahead of the first request, e.g. Glide with its pools, caches and
+     * http client. Call it on a background thread from {@link android.app.Application#onCreate()}
+     * after the loaders are configured, so that the first screen doesn't wait for it on the main
+     * thread. Blocks until everything is ready.
+     *
+     * @see Warmable
+     */
+    @SuppressWarnings("unused")
+    @WorkerThread
+    public static void warmUp(@NonNull Context context) {
+        DaliLoader.getInstance().warmUp(context);
+    }
+
     /**
      * Changes Dali main loader implementation. This loader will be used for {@link View}s of known
      * dimensions and {@link DaliCallback}.
@@ -134,6 +306,21 @@ public class Dali {
         DaliLoader.getInstance().initMainImageLoader(imageLoaderClass);
     }
 
+    /**
+     * Routes urls of a scheme, e.g. "file" or "content", to a loader of their own. Urls of other
+     * schemes are loaded by the main loader.
+     *
+     * @param imageLoaderClass  a loader for the scheme or null to use the main loader again
+     * @see io.reist.dali.glide.LocalGlideImageLoader  a loader for local files
+     */
+    @SuppressWarnings("unused")
+    public static void setImageLoaderClass(
+            @NonNull String scheme,
+            @Nullable Class<? extends ImageLoader> imageLoaderClass
+    ) {
+        DaliLoader.getInstance().initSchemeImageLoader(scheme, imageLoaderClass);
+    }
+
     /**
      * Changes Dali deferred image loader implementation. This loader will be used for {@link View}s
      * which have not been measured yet
@@ -28,7 +28,7 @@ public interface DaliCallback {
     /**
      * Called when the bitmap is fully loaded. Please note that the bitmap may get recycled
      * after this method because of a particular {@link ImageLoader} implementation.
-     * It is recommended to make a copy.
+     * It is recommended to make a copy or to use {@link DaliHandleCallback}.
      */
     void onImageLoaded(@NonNull Bitmap bitmap);
 
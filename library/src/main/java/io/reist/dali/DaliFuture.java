@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.reist.dali.DaliUtils.checkNotMainThread;
+
+/**
+ * A result of {@link ImageRequest#submit()}. Unlike callbacks passed to
+ * {@link ImageRequest#into(DaliCallback)}, the future and its listeners are strongly referenced
+ * until the load is done, so anonymous listeners are safe to use.
+ *
+ * Listeners are called on the executor given to {@link ImageRequest#submit(Executor)}.
+ * Listeners of cancelled futures are not called.
+ */
+public class DaliFuture implements Future<Bitmap>, DaliErrorCallback {
+
+    /**
+     * Runs listeners on the thread which completes the load
+     */
+    public static final Executor DIRECT = new Executor() {
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+
+    };
+
+    private final Executor executor;
+
+    private final CountDownLatch doneLatch = new CountDownLatch(1);
+
+    private final List<DaliCallback> listeners = new ArrayList<>();
+
+    private boolean done;
+    private boolean cancelled;
+    private Bitmap bitmap;
+    private Exception exception;
+
+    DaliFuture(@NonNull Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param listener  a listener which is also notified about failures if it implements
+     *                  {@link DaliErrorCallback}
+     */
+    public DaliFuture addListener(@NonNull DaliCallback listener) {
+
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return this;
+            }
+        }
+
+        deliver(listener);
+
+        return this;
+
+    }
+
+    @Override
+    public void onImageLoaded(@NonNull Bitmap bitmap) {
+        complete(bitmap, null);
+    }
+
+    @Override
+    public void onImageFailed(@Nullable Exception e) {
+        complete(null, e);
+    }
+
+    private void complete(Bitmap bitmap, Exception exception) {
+
+        List<DaliCallback> listeners;
+
+        synchronized (this) {
+
+            if (done) {
+                return;
+            }
+
+            this.done = true;
+            this.bitmap = bitmap;
+            this.exception = exception;
+
+            listeners = new ArrayList<>(this.listeners);
+            this.listeners.clear();
+
+        }
+
+        doneLatch.countDown();
+        DaliLoader.getInstance().onFutureDone(this);
+
+        for (DaliCallback listener : listeners) {
+            deliver(listener);
+        }
+
+    }
+
+    private void deliver(final DaliCallback listener) {
+
+        if (cancelled) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (bitmap != null) {
+                    listener.onImageLoaded(bitmap);
+                } else if (listener instanceof DaliErrorCallback) {
+                    ((DaliErrorCallback) listener).onImageFailed(exception);
+                }
+            }
+
+        });
+
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        synchronized (this) {
+
+            if (done) {
+                return false;
+            }
+
+            done = true;
+            cancelled = true;
+            listeners.clear();
+
+        }
+
+        doneLatch.countDown();
+
+        // loaders aren't thread-safe, the cancellation is posted if it's a worker thread
+        DaliLoader.getInstance().onFutureCancelled(this);
+
+        return true;
+
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Blocks until the load is done. The results are delivered on the main thread, so it
+     * must not be called there.
+     */
+    @WorkerThread
+    @Override
+    public Bitmap get() throws InterruptedException, ExecutionException {
+        checkNotMainThread();
+        doneLatch.await();
+        return getResult();
+    }
+
+    @WorkerThread
+    @Override
+    public Bitmap get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        checkNotMainThread();
+        if (!doneLatch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private synchronized Bitmap getResult() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        } else if (bitmap == null) {
+            throw new ExecutionException(exception);
+        } else {
+            return bitmap;
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+/**
+ * A {@link DaliCallback} which gets a {@link BitmapHandle} instead of a bitmap, so there's
+ * no need to copy the bitmap. The callback owns the handle and must release it when the bitmap
+ * is not needed anymore.
+ *
+ * Loaders which support handles, such as {@link io.reist.dali.glide.GlideImageLoader}, keep
+ * the callback referenced until it gets the handle and reuse the bitmap after the final release.
+ * With other loaders, the handle wraps the bitmap passed to {@link #onImageLoaded(Bitmap)}, and
+ * the bitmap is managed by the loader as usual.
+ *
+ * With {@link io.reist.dali.glide.GlideImageLoader}, the bitmap is released anyway when the
+ * attach target is destroyed, so handles which outlive a screen should be requested with
+ * an application context.
+ */
+public abstract class DaliHandleCallback implements DaliCallback {
+
+    @Override
+    public final void onImageLoaded(@NonNull Bitmap bitmap) {
+        onImageLoaded(new BitmapHandle(bitmap, null));
+    }
+
+    public abstract void onImageLoaded(@NonNull BitmapHandle handle);
+
+}
@@ -16,19 +16,93 @@
 
 package io.reist.dali;
 
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.view.View;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
 import io.reist.dali.glide.GlideImageLoader;
 
+import static io.reist.dali.DaliUtils.checkNotMainThread;
 import static io.reist.dali.DaliUtils.getApplicationContext;
 import static io.reist.dali.DaliUtils.setPlaceholder;
 
 public class DaliLoader implements ImageLoader {
 
-    private ImageLoader mMainImageLoader;
+    /**
+     * Low quality images are requested at this fraction of the target size
+     */
+    private static final int LOW_QUALITY_SCALE = 8;
+
+    /**
+     * A grown drawable is reloaded when its bitmap is stretched by more than this
+     */
+    private static final float DEFAULT_UPGRADE_FACTOR = 1.5f;
+
+    /**
+     * Created on first use, so that nothing is initialized before it's needed or warmed up
+     */
+    private volatile ImageLoader mMainImageLoader;
+    private Class<? extends ImageLoader> mMainImageLoaderClass;
+
+    /**
+     * Loaders for urls of particular schemes, everything else goes to the main loader. Usually
+     * the map is empty, so that routing costs one check. The map is copied on write, so that
+     * readers don't need a lock.
+     */
+    private volatile Map<String, ImageLoader> mSchemeImageLoaders = Collections.emptyMap();
     private DeferredImageLoader mDeferredImageLoader;
     private boolean mDebuggable;
+    private CancellationPolicy mCancellationPolicy = CancellationPolicy.ABORT;
+    private int mMaxParkedRequests;
+    private long mMaxParkingTime;
+    private DecodeBudget mDecodeBudget;
+    private Pipeline mPipeline;
+    private SizeBucketing mSizeBucketing = SizeBucketing.NONE;
+    private float mUpgradeFactor = DEFAULT_UPGRADE_FACTOR;
+
+    private final MemoryTracker mMemoryTracker = new MemoryTracker();
+    private final MemoryCapCrossing mMemoryCapCrossing = new MemoryCapCrossing();
+    private long mMemoryCap;
+
+    private boolean mPaused;
+    private final Set<Object> mPausedAttachTargets = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+
+    /**
+     * Loads requested while paused, only the latest one is kept for each view
+     */
+    private final Map<View, PendingLoad> mPendingLoads = new WeakHashMap<>();
+
+    private boolean mLowQuality;
+    private final Set<Object> mLowQualityAttachTargets = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+
+    /**
+     * Full quality requests of views which show low quality images
+     */
+    private final Map<View, PendingLoad> mLowQualityLoads = new WeakHashMap<>();
+
+    /**
+     * Keeps submitted futures from being collected until they are done
+     */
+    private final Set<DaliFuture> mFutures = Collections.synchronizedSet(new HashSet<DaliFuture>());
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     private DaliLoader() {
         initMainImageLoader(GlideImageLoader.class);
@@ -52,19 +126,69 @@ public class DaliLoader implements ImageLoader {
 
     }
 
+    /**
+     * @param imageLoaderClass  a loader for the scheme or null to load such urls with the main
+     *                          loader
+     */
     @SuppressWarnings("TryWithIdenticalCatches")
-    void initMainImageLoader(@NonNull Class<? extends ImageLoader> mainImageLoaderClass) {
+    synchronized void initSchemeImageLoader(
+            @NonNull String scheme,
+            @Nullable Class<? extends ImageLoader> imageLoaderClass
+    ) {
+
+        scheme = scheme.toLowerCase(Locale.US);
+
+        Map<String, ImageLoader> schemeImageLoaders = new HashMap<>(mSchemeImageLoaders);
+
+        ImageLoader imageLoader = schemeImageLoaders.remove(scheme);
+        if (imageLoader != null) {
+            imageLoader.cancelAll();
+        }
+
+        if (imageLoaderClass != null) {
+            try {
+                schemeImageLoaders.put(scheme, imageLoaderClass.newInstance());
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        mSchemeImageLoaders = Collections.unmodifiableMap(schemeImageLoaders);
+
+    }
+
+    synchronized void initMainImageLoader(@NonNull Class<? extends ImageLoader> mainImageLoaderClass) {
 
         if (mMainImageLoader != null) {
             mMainImageLoader.cancelAll();
+            mMainImageLoader = null;
         }
 
-        try {
-            mMainImageLoader = mainImageLoaderClass.newInstance();
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+        mMainImageLoaderClass = mainImageLoaderClass;
+
+    }
+
+    /**
+     * Creates the loaders and lets them initialize their engines, pools and caches. Must not be
+     * called on the main thread.
+     *
+     * @see Warmable
+     */
+    @WorkerThread
+    public void warmUp(@NonNull Context context) {
+
+        checkNotMainThread();
+
+        List<ImageLoader> imageLoaders = new ArrayList<>();
+        imageLoaders.add(getMainImageLoader());
+        imageLoaders.addAll(mSchemeImageLoaders.values());
+
+        for (ImageLoader imageLoader : imageLoaders) {
+            if (imageLoader instanceof Warmable) {
+                ((Warmable) imageLoader).warmUp(context);
+            }
         }
 
     }
@@ -86,16 +210,50 @@ public class DaliLoader implements ImageLoader {
 
         }
 
+        if (request.hasUrl() && isPaused(request.attachTarget)) {
+            setPlaceholder(request, view, background, null);
+            mPendingLoads.put(view, new PendingLoad(request, background));
+        } else if (request.hasUrl() && isLowQuality(request.attachTarget) && canDownsample(request)) {
+            mLowQualityLoads.put(view, new PendingLoad(request, background));
+            start(downsample(request).lowQuality(true), view, background);
+        } else if (request.hasUrl() && isOverMemoryCap() && canDownsample(request)) {
+            start(downsample(request), view, background);
+        } else {
+            start(request, view, background);
+        }
+
+    }
+
+    private static boolean hasTargetSize(@NonNull ImageRequest request) {
+        return request.getTargetWidth() > 0 && request.getTargetHeight() > 0;
+    }
+
+    /**
+     * Parts of images are always cut from the original size, there's nothing to save on them
+     */
+    private static boolean canDownsample(@NonNull ImageRequest request) {
+        return hasTargetSize(request) && request.region == null;
+    }
+
+    @NonNull
+    private static ImageRequest downsample(@NonNull ImageRequest request) {
+        return request.copy().targetSize(
+                Math.max(1, request.getTargetWidth() / LOW_QUALITY_SCALE),
+                Math.max(1, request.getTargetHeight() / LOW_QUALITY_SCALE)
+        );
+    }
+
+    private void start(@NonNull ImageRequest request, @NonNull View view, boolean background) {
         if (request.defer && (request.getTargetWidth() <= 0 || request.getTargetHeight() <= 0)) {
             mDeferredImageLoader.load(request, view, background);
         } else {
+            request.resolveUrl(mSizeBucketing);
             if (request.url == null) {
                 setPlaceholder(request, view, background, null);
             } else {
-                mMainImageLoader.load(request, view, background);
+                getImageLoader(request.url).load(request, view, background);
             }
         }
-
     }
 
     @Override
@@ -103,6 +261,8 @@ public class DaliLoader implements ImageLoader {
 
         cancel(callback);
 
+        request.resolveUrl(mSizeBucketing);
+
         if (request.transformer != null) {
             request = request.transformer.transform(request);
         }
@@ -112,7 +272,85 @@ public class DaliLoader implements ImageLoader {
                     BitmapCompat.toBitmap(getApplicationContext(request.attachTarget), request.placeholderRes)
             );
         } else {
-            mMainImageLoader.load(request, callback);
+            getImageLoader(request.url).load(request, callback);
+        }
+
+    }
+
+    /**
+     * Can be called on any thread, the load is started on the main thread
+     */
+    @NonNull
+    public DaliFuture submit(@NonNull final ImageRequest request, @NonNull Executor executor) {
+
+        final DaliFuture future = new DaliFuture(executor);
+        mFutures.add(future);
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            load(request, future);
+        } else {
+            mMainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (!future.isDone()) {
+                        load(request, future);
+                    }
+                }
+
+            });
+        }
+
+        return future;
+
+    }
+
+    /**
+     * Loads an image blocking the calling thread. The main loader is used directly if it's
+     * a {@link BlockingImageLoader}, otherwise the request is submitted and waited for.
+     */
+    @WorkerThread
+    @NonNull
+    public Bitmap get(@NonNull ImageRequest request) throws InterruptedException, ExecutionException {
+
+        checkNotMainThread();
+
+        request.resolveUrl(mSizeBucketing);
+
+        ImageLoader imageLoader = getImageLoader(request.url);
+        if (request.url != null && imageLoader instanceof BlockingImageLoader) {
+            if (request.transformer != null) {
+                request = request.transformer.transform(request);
+            }
+            return ((BlockingImageLoader) imageLoader).get(request);
+        } else {
+            return submit(request, DaliFuture.DIRECT).get();
+        }
+
+    }
+
+    void onFutureDone(@NonNull DaliFuture future) {
+        mFutures.remove(future);
+    }
+
+    /**
+     * Can be called on any thread, the load is cancelled on the main thread
+     */
+    void onFutureCancelled(@NonNull final DaliFuture future) {
+
+        onFutureDone(future);
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            cancel(future);
+        } else {
+            mMainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    cancel(future);
+                }
+
+            });
         }
 
     }
@@ -125,16 +363,256 @@ public class DaliLoader implements ImageLoader {
         return mDebuggable;
     }
 
+    public void setCancellationPolicy(@NonNull CancellationPolicy cancellationPolicy) {
+        mCancellationPolicy = cancellationPolicy;
+    }
+
+    @NonNull
+    public CancellationPolicy getCancellationPolicy() {
+        return mCancellationPolicy;
+    }
+
+    public void setSizeBucketing(@NonNull SizeBucketing sizeBucketing) {
+        mSizeBucketing = sizeBucketing;
+    }
+
+    @NonNull
+    public SizeBucketing getSizeBucketing() {
+        return mSizeBucketing;
+    }
+
+    public void setUpgradeFactor(float upgradeFactor) {
+        mUpgradeFactor = upgradeFactor;
+    }
+
+    public float getUpgradeFactor() {
+        return mUpgradeFactor;
+    }
+
+    public void setParking(int maxRequests, long maxTime) {
+        mMaxParkedRequests = maxRequests;
+        mMaxParkingTime = maxTime;
+    }
+
+    public int getMaxParkedRequests() {
+        return mMaxParkedRequests;
+    }
+
+    public long getMaxParkingTime() {
+        return mMaxParkingTime;
+    }
+
+    public void setDecodeBudget(@Nullable DecodeBudget decodeBudget) {
+        mDecodeBudget = decodeBudget;
+    }
+
+    @Nullable
+    public DecodeBudget getDecodeBudget() {
+        return mDecodeBudget;
+    }
+
+    /**
+     * A replaced pipeline is retired rather than shut down, because requests which have started
+     * keep using its stages
+     */
+    public void setPipeline(@Nullable Pipeline pipeline) {
+        Pipeline oldPipeline = mPipeline;
+        mPipeline = pipeline;
+        if (oldPipeline != null) {
+            oldPipeline.retire();
+        }
+    }
+
+    @Nullable
+    public Pipeline getPipeline() {
+        return mPipeline;
+    }
+
+    /**
+     * @param memoryCap     a number of bytes held by live drawables above which images are
+     *                      loaded in low quality and the main loader is expected to trim its
+     *                      memory caches once, see {@link #shouldTrimMemory()}; 0 for no cap
+     */
+    public void setMemoryCap(long memoryCap) {
+        mMemoryCap = memoryCap;
+    }
+
+    public long getMemoryCap() {
+        return mMemoryCap;
+    }
+
+    public boolean isOverMemoryCap() {
+        return mMemoryCap > 0 && mMemoryTracker.getBytes() > mMemoryCap;
+    }
+
+    /**
+     * @return true once when the bytes held by live drawables go above the memory cap, the next
+     *         crossing is reported after they fall well below the cap
+     */
+    public boolean shouldTrimMemory() {
+        return mMemoryCapCrossing.update(mMemoryTracker.getBytes(), mMemoryCap);
+    }
+
+    @NonNull
+    public MemoryTracker getMemoryTracker() {
+        return mMemoryTracker;
+    }
+
+    @NonNull
+    public DaliMetrics getMetrics() {
+
+        DaliMetrics metrics = new DaliMetrics();
+
+        mMemoryTracker.fill(metrics);
+        metrics.maxDrawableBytes = mMemoryCap;
+
+        DecodeBudget decodeBudget = mDecodeBudget;
+        if (decodeBudget != null) {
+            metrics.decodeBudgetBytes = decodeBudget.getMaxBytes();
+            metrics.decodeInFlightBytes = decodeBudget.getInFlightBytes();
+            metrics.decodePeakBytes = decodeBudget.getPeakBytes();
+            metrics.decodeWaiting = decodeBudget.getWaiting();
+            metrics.decodeWaits = decodeBudget.getWaits();
+            metrics.decodeWaitTime = decodeBudget.getWaitTime();
+            metrics.decodeDownsampled = decodeBudget.getDownsampled();
+        }
+
+        Pipeline pipeline = mPipeline;
+        if (pipeline != null) {
+            pipeline.fill(metrics);
+        }
+
+        return metrics;
+
+    }
+
+    /**
+     * @param attachTarget  an attach target to pause, or null to pause all loads
+     */
+    public void pause(@Nullable Object attachTarget) {
+        if (attachTarget == null) {
+            mPaused = true;
+        } else {
+            mPausedAttachTargets.add(attachTarget);
+        }
+    }
+
+    /**
+     * @param attachTarget  an attach target to resume, or null to resume all loads except
+     *                      the ones of individually paused attach targets
+     */
+    public void resume(@Nullable Object attachTarget) {
+
+        if (attachTarget == null) {
+            mPaused = false;
+        } else {
+            mPausedAttachTargets.remove(attachTarget);
+        }
+
+        List<Map.Entry<View, PendingLoad>> pendingLoads = new ArrayList<>(mPendingLoads.entrySet());
+        for (Map.Entry<View, PendingLoad> entry : pendingLoads) {
+            PendingLoad pendingLoad = entry.getValue();
+            if (!isPaused(pendingLoad.request.attachTarget)) {
+                View view = entry.getKey();
+                mPendingLoads.remove(view);
+                start(pendingLoad.request, view, pendingLoad.background);
+            }
+        }
+
+    }
+
+    public boolean isPaused(@Nullable Object attachTarget) {
+        return mPaused || attachTarget != null && mPausedAttachTargets.contains(attachTarget);
+    }
+
+    /**
+     * Switches the low quality mode for the given attach target, or for all loads if it's null.
+     * In this mode, views get downsampled images. When the mode is switched off, the views which
+     * are still visible are reloaded in full quality. The full quality images are faded in
+     * over the low quality ones.
+     */
+    public void setLowQuality(@Nullable Object attachTarget, boolean lowQuality) {
+
+        if (attachTarget == null) {
+            mLowQuality = lowQuality;
+        } else if (lowQuality) {
+            mLowQualityAttachTargets.add(attachTarget);
+        } else {
+            mLowQualityAttachTargets.remove(attachTarget);
+        }
+
+        if (lowQuality) {
+            return;
+        }
+
+        List<Map.Entry<View, PendingLoad>> lowQualityLoads = new ArrayList<>(mLowQualityLoads.entrySet());
+        for (Map.Entry<View, PendingLoad> entry : lowQualityLoads) {
+
+            PendingLoad lowQualityLoad = entry.getValue();
+            if (isLowQuality(lowQualityLoad.request.attachTarget)) {
+                continue;
+            }
+
+            View view = entry.getKey();
+            mLowQualityLoads.remove(view);
+
+            // recycled views are detached or have been bound to other requests
+            if (view.getWindowToken() != null && view.isShown()) {
+
+                // no placeholder to keep the low quality image until the full one is ready
+                ImageRequest upgrade = lowQualityLoad.request.copy();
+                upgrade.placeholderRes = 0;
+                upgrade.upgrade = true;
+
+                load(upgrade, view, lowQualityLoad.background);
+
+            }
+
+        }
+
+    }
+
+    public boolean isLowQuality(@Nullable Object attachTarget) {
+        return mLowQuality || attachTarget != null && mLowQualityAttachTargets.contains(attachTarget);
+    }
+
+    @SuppressWarnings("SuspiciousMethodCalls")
     @Override
     public void cancel(@NonNull Object target) {
+        mPendingLoads.remove(target);
+        mLowQualityLoads.remove(target);
         mDeferredImageLoader.cancel(target);
-        mMainImageLoader.cancel(target);
+        ImageLoader mainImageLoader = mMainImageLoader;
+        if (mainImageLoader != null) {
+            mainImageLoader.cancel(target);
+        }
+        Map<String, ImageLoader> schemeImageLoaders = mSchemeImageLoaders;
+        if (!schemeImageLoaders.isEmpty()) {
+            for (ImageLoader imageLoader : schemeImageLoaders.values()) {
+                imageLoader.cancel(target);
+            }
+        }
     }
 
     @Override
     public void cancelAll() {
+        mPendingLoads.clear();
+        mLowQualityLoads.clear();
         mDeferredImageLoader.cancelAll();
-        mMainImageLoader.cancelAll();
+        ImageLoader mainImageLoader = mMainImageLoader;
+        if (mainImageLoader != null) {
+            mainImageLoader.cancelAll();
+        }
+        for (ImageLoader imageLoader : mSchemeImageLoaders.values()) {
+            imageLoader.cancelAll();
+        }
+        List<DaliFuture> futures;
+        synchronized (mFutures) {
+            futures = new ArrayList<>(mFutures);
+        }
+        for (DaliFuture future : futures) {
+            future.cancel(false);
+        }
     }
 
     public static DaliLoader getInstance() {
@@ -145,8 +623,71 @@ public class DaliLoader implements ImageLoader {
         return mDeferredImageLoader;
     }
 
+    @SuppressWarnings("TryWithIdenticalCatches")
+    @NonNull
     public ImageLoader getMainImageLoader() {
-        return mMainImageLoader;
+
+        ImageLoader imageLoader = mMainImageLoader;
+
+        if (imageLoader == null) {
+            synchronized (this) {
+                if (mMainImageLoader == null) {
+                    try {
+                        mMainImageLoader = mMainImageLoaderClass.newInstance();
+                    } catch (InstantiationException e) {
+                        throw new RuntimeException(e);
+                    } catch (IllegalAccessException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                imageLoader = mMainImageLoader;
+            }
+        }
+
+        return imageLoader;
+
+    }
+
+    /**
+     * @return a loader which is registered for the scheme of the url or the main loader
+     */
+    @NonNull
+    public ImageLoader getImageLoader(@Nullable String url) {
+
+        Map<String, ImageLoader> schemeImageLoaders = mSchemeImageLoaders;
+
+        if (schemeImageLoaders.isEmpty() || url == null) {
+            return getMainImageLoader();
+        }
+
+        // no parsing, there are only a few schemes to compare
+        for (Map.Entry<String, ImageLoader> entry : schemeImageLoaders.entrySet()) {
+            String scheme = entry.getKey();
+            int length = scheme.length();
+            if (url.length() > length && url.charAt(length) == ':' && url.regionMatches(true, 0, scheme, 0, length)) {
+                return entry.getValue();
+            }
+        }
+
+        return getMainImageLoader();
+
+    }
+
+    @Nullable
+    public ImageLoader getSchemeImageLoader(@NonNull String scheme) {
+        return mSchemeImageLoaders.get(scheme.toLowerCase(Locale.US));
+    }
+
+    private static class PendingLoad {
+
+        final ImageRequest request;
+        final boolean background;
+
+        PendingLoad(ImageRequest request, boolean background) {
+            this.request = request;
+            this.background = background;
+        }
+
     }
 
     /**
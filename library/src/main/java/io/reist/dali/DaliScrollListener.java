@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Keeps a {@link RecyclerView} from loading full images for rows which are only passed by
+ * during a fling. By default, loading is paused while the scroll state is
+ * {@link RecyclerView#SCROLL_STATE_SETTLING}. Alternatively, low quality images are loaded
+ * while the list scrolls faster than a threshold, and the rows which are visible when
+ * the list stops are upgraded to full quality (see {@link DaliLoader#setLowQuality(Object, boolean)}).
+ *
+ * Usage: recyclerView.addOnScrollListener(new DaliScrollListener(activity));
+ */
+public class DaliScrollListener extends RecyclerView.OnScrollListener {
+
+    /**
+     * Scroll events which are further apart are not used to estimate the velocity
+     */
+    private static final long MAX_EVENT_INTERVAL = 100;
+
+    private final Object attachTarget;
+    private final int lowQualityVelocity;
+
+    private boolean paused;
+    private boolean lowQuality;
+
+    private long lastScrollTime;
+
+    /**
+     * Pauses all loads
+     */
+    @SuppressWarnings("unused")
+    public DaliScrollListener() {
+        this(null);
+    }
+
+    /**
+     * @param attachTarget  an attach target to pause, null pauses all loads
+     */
+    public DaliScrollListener(@Nullable Object attachTarget) {
+        this(attachTarget, 0);
+    }
+
+    /**
+     * @param attachTarget          an attach target to switch, null switches all loads
+     * @param lowQualityVelocity    a velocity in pixels per second above which low quality
+     *                              images are loaded instead of pausing; 0 to pause while
+     *                              settling
+     */
+    public DaliScrollListener(@Nullable Object attachTarget, int lowQualityVelocity) {
+        this.attachTarget = attachTarget;
+        this.lowQualityVelocity = lowQualityVelocity;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+
+        if (lowQualityVelocity > 0) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                setLowQuality(false);
+            }
+            return;
+        }
+
+        boolean settling = newState == RecyclerView.SCROLL_STATE_SETTLING;
+
+        if (settling == paused) {
+            return;
+        }
+
+        paused = settling;
+
+        DaliLoader daliLoader = DaliLoader.getInstance();
+        if (settling) {
+            daliLoader.pause(attachTarget);
+        } else {
+            daliLoader.resume(attachTarget);
+        }
+
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+
+        if (lowQualityVelocity <= 0) {
+            return;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        long interval = now - lastScrollTime;
+        lastScrollTime = now;
+
+        if (interval <= 0 || interval > MAX_EVENT_INTERVAL) {
+            return;
+        }
+
+        // the list is upgraded only when it stops
+        if ((Math.abs(dx) + Math.abs(dy)) * 1000L / interval > lowQualityVelocity) {
+            setLowQuality(true);
+        }
+
+    }
+
+    private void setLowQuality(boolean lowQuality) {
+        if (this.lowQuality != lowQuality) {
+            this.lowQuality = lowQuality;
+            DaliLoader.getInstance().setLowQuality(attachTarget, lowQuality);
+        }
+    }
+
+}
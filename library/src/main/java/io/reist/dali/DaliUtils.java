@@ -23,12 +23,16 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.view.View;
 import android.widget.ImageView;
 
+import java.lang.ref.WeakReference;
+
 import io.reist.dali.drawables.CircleFadingDaliDrawable;
+import io.reist.dali.drawables.DaliDrawable;
 import io.reist.dali.drawables.FadingDaliDrawable;
 
 public class DaliUtils {
@@ -75,6 +79,8 @@ public class DaliUtils {
             );
         }
 
+        DaliLoader.getInstance().getMemoryTracker().track(placeholderDrawable, request.attachTarget, request.url);
+
         if (background) {
             setBackground(placeholderDrawable, view);
         } else {
@@ -83,6 +89,62 @@ public class DaliUtils {
 
     }
 
+    /**
+     * Loads the request again when the drawable outgrows its bitmap, see
+     * {@link DaliLoader#getUpgradeFactor()}
+     *
+     * @param request   the request as it was given to the loader, i.e. before transformation
+     */
+    public static void setUpgradeListener(
+            @NonNull DaliDrawable drawable,
+            @NonNull final ImageRequest request,
+            @NonNull View view,
+            final boolean background
+    ) {
+
+        float upgradeFactor = DaliLoader.getInstance().getUpgradeFactor();
+
+        if (upgradeFactor <= 0 || request.lowQuality || request.blur || request.region != null) {
+            // low quality images are upgraded by DaliLoader itself, blurred ones are sampled
+            // down on purpose, regions are always decoded at the original size
+            return;
+        }
+
+        final WeakReference<View> viewRef = new WeakReference<>(view);
+
+        drawable.setUpgradeListener(new DaliDrawable.UpgradeListener() {
+
+            @Override
+            public void onUpgradeNeeded(@NonNull final DaliDrawable drawable) {
+
+                View view = viewRef.get();
+
+                if (view == null) {
+                    return;
+                }
+
+                // bounds are changed during layout or drawing, so the load waits for them to end
+                view.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        View view = viewRef.get();
+                        if (view != null && getPlaceholder(view, background) == drawable) {
+                            // no placeholder to keep the current image until the sharper one is ready
+                            ImageRequest upgrade = request.copy();
+                            upgrade.placeholderRes = 0;
+                            DaliLoader.getInstance().load(upgrade, view, background);
+                        }
+                    }
+
+                });
+
+            }
+
+        }, upgradeFactor);
+
+    }
+
     public static Drawable getPlaceholder(
             @NonNull View view,
             boolean background
@@ -180,6 +242,12 @@ public class DaliUtils {
                 Bitmap.Config.ARGB_8888;
     }
 
+    public static void checkNotMainThread() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Blocking on the main thread");
+        }
+    }
+
     @Nullable
     public static Context getApplicationContext(@NonNull ImageRequest request) {
         Context appContext = null;
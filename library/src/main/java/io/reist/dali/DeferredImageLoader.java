@@ -100,7 +100,13 @@ public class DeferredImageLoader implements ImageLoader {
                         );
                     }
 
-                    DaliLoader.getInstance().getMainImageLoader().load(imageRequest, target, background);
+                    DaliLoader daliLoader = DaliLoader.getInstance();
+                    imageRequest.resolveUrl(daliLoader.getSizeBucketing());
+                    if (imageRequest.url == null) {
+                        DaliUtils.setPlaceholder(imageRequest, target, background, null);
+                    } else {
+                        daliLoader.getImageLoader(imageRequest.url).load(imageRequest, target, background);
+                    }
 
                     return true;
 
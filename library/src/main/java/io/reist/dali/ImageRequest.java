@@ -17,10 +17,16 @@
 package io.reist.dali;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.view.View;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
 /**
  * Requests for {@link Dali}.
  *
@@ -35,15 +41,50 @@ public class ImageRequest {
     public ImageRequestTransformer transformer = ImageRequestTransformer.IDENTITY;
     public boolean defer = true;
     public boolean inCircle = false;
+
+    /**
+     * The circle is cut out once by the loader instead of being drawn on every frame,
+     * see {@link #inCircle(boolean, boolean)}
+     */
+    public boolean prebakedCircle = false;
     public Bitmap.Config config = Bitmap.Config.ARGB_8888;
     public @DrawableRes int placeholderRes;
     public boolean blur = false;
+
+    /**
+     * A blur radius in pixels of the sampled image, see {@link #blur(int, int)}
+     */
+    public int blurRadius = 8;
+
+    /**
+     * A blurred image is decoded this many times smaller than the target size
+     */
+    public int blurSampling = 16;
+
     public boolean disableTransformation = false;
     public ScaleMode scaleMode = ScaleMode.CENTER_INSIDE;
+    public boolean lowQuality = false;
+
+    /**
+     * The request replaces a {@link #lowQuality} image, see {@link #upgrade(boolean)}
+     */
+    public boolean upgrade = false;
+
+    /**
+     * A part of the image to show, in pixels of the original image
+     */
+    public Rect region = null;
 
     private int targetWidth = 0;
     private int targetHeight = 0;
 
+    /**
+     * The url as it was given to {@link #url(String)}, {@link #url} is chosen from it and
+     * {@link #urlVariants} when the target size is known
+     */
+    private String sourceUrl = null;
+    private UrlVariants urlVariants = null;
+
     public ImageRequest() {
         attachTarget = null;
     }
@@ -52,11 +93,57 @@ public class ImageRequest {
         this.attachTarget = attachTarget;
     }
 
+    /**
+     * @param url   an image url or a template with {@link UrlVariants#WIDTH} and
+     *              {@link UrlVariants#HEIGHT} placeholders which are replaced with the target
+     *              size. A template is never loaded if the size is unknown.
+     */
     public ImageRequest url(String url) {
         this.url = url;
+        this.sourceUrl = url;
         return this;
     }
 
+    /**
+     * Adds a version of the image which is scaled to the given width. The narrowest variant which
+     * is not narrower than the target is loaded. If there's none, the url given to
+     * {@link #url(String)} is loaded.
+     */
+    @SuppressWarnings("unused")
+    public ImageRequest urlVariant(int width, String url) {
+        if (urlVariants == null) {
+            urlVariants = new UrlVariants();
+        }
+        urlVariants.put(width, url);
+        return this;
+    }
+
+    /**
+     * @return true if there's something to load, possibly after the target size is known
+     */
+    boolean hasUrl() {
+        return url != null || sourceUrl != null || urlVariants != null;
+    }
+
+    /**
+     * Sets {@link #url} according to the target size if the request has url variants or
+     * a template
+     */
+    void resolveUrl(@NonNull SizeBucketing sizeBucketing) {
+
+        if (UrlVariants.isTemplate(sourceUrl)) {
+            // a server is asked for bucketed sizes too, so that its responses can be shared
+            url = UrlVariants.expand(
+                    sourceUrl,
+                    sizeBucketing.getWidth(targetWidth, targetHeight),
+                    sizeBucketing.getHeight(targetWidth, targetHeight)
+            );
+        } else if (urlVariants != null) {
+            url = urlVariants.choose(targetWidth, sourceUrl);
+        }
+
+    }
+
     @SuppressWarnings("unused")
     public ImageRequest transformer(ImageRequestTransformer transformer) {
         this.transformer = transformer;
@@ -84,6 +171,20 @@ public class ImageRequest {
         return this;
     }
 
+    /**
+     * @param prebaked  true to cut the circle out of the image on a worker thread, so that
+     *                  drawing it is a plain bitmap copy. The circle is cached apart from
+     *                  the square image and is transparent outside, so it takes 4 bytes per
+     *                  pixel whatever the config is. Loaders which don't support it draw
+     *                  the circle as usual.
+     */
+    @SuppressWarnings("unused")
+    public ImageRequest inCircle(boolean inCircle, boolean prebaked) {
+        this.inCircle = inCircle;
+        this.prebakedCircle = prebaked;
+        return this;
+    }
+
     @SuppressWarnings("unused")
     public ImageRequest config(Bitmap.Config config) {
         this.config = config;
@@ -102,6 +203,57 @@ public class ImageRequest {
         return this;
     }
 
+    /**
+     * Blurs the image. Blurred images don't need details, so they are decoded and blurred
+     * at a fraction of the target size and stretched when drawn.
+     *
+     * @param radius    a blur radius in pixels of the sampled image
+     * @param sampling  how many times the image is smaller than the target size, 1 to keep
+     *                  the target size
+     */
+    @SuppressWarnings("unused")
+    public ImageRequest blur(int radius, int sampling) {
+        this.blur = true;
+        this.blurRadius = radius;
+        this.blurSampling = Math.max(1, sampling);
+        return this;
+    }
+
+    /**
+     * @param lowQuality    the image is a temporary low resolution version which is going to be
+     *                      replaced soon, so the loader should keep the source for the full
+     *                      resolution request
+     */
+    @SuppressWarnings("unused")
+    public ImageRequest lowQuality(boolean lowQuality) {
+        this.lowQuality = lowQuality;
+        return this;
+    }
+
+    /**
+     * @param upgrade   the request replaces a low quality image of the same url, so the loader
+     *                  should decode the source which it has kept for it instead of downloading
+     *                  the image again
+     */
+    @SuppressWarnings("unused")
+    public ImageRequest upgrade(boolean upgrade) {
+        this.upgrade = upgrade;
+        return this;
+    }
+
+    /**
+     * Shows a part of the image, e.g. an icon of a sprite sheet. The image is loaded in its
+     * original size, so that all requests for its parts share a single bitmap and a single
+     * cache entry. Callbacks and {@link #get()} receive a copy of the part.
+     *
+     * @param region    the part in pixels of the original image or null for the whole image
+     */
+    @SuppressWarnings("unused")
+    public ImageRequest region(@Nullable Rect region) {
+        this.region = region == null ? null : new Rect(region);
+        return this;
+    }
+
     public void into(@NonNull View view) {
         into(view, false);
     }
@@ -114,6 +266,44 @@ public class ImageRequest {
         DaliLoader.getInstance().load(this, callback);
     }
 
+    /**
+     * Starts loading and returns a future. The listeners of the future are called on the thread
+     * which completes the load.
+     */
+    @NonNull
+    public DaliFuture submit() {
+        return submit(DaliFuture.DIRECT);
+    }
+
+    /**
+     * @param executor  an executor to call the listeners of the future on
+     */
+    @NonNull
+    public DaliFuture submit(@NonNull Executor executor) {
+        return DaliLoader.getInstance().submit(this, executor);
+    }
+
+    /**
+     * Loads the image blocking the calling thread. Uses the same caches as asynchronous loads.
+     * Must not be called on the main thread.
+     *
+     * @return the image of the target size or, if there's none, of the original size
+     */
+    @WorkerThread
+    @NonNull
+    public Bitmap get() throws InterruptedException, ExecutionException {
+        return DaliLoader.getInstance().get(this);
+    }
+
+    /**
+     * @see #get()
+     */
+    @WorkerThread
+    @NonNull
+    public Bitmap get(int w, int h) throws InterruptedException, ExecutionException {
+        return targetSize(w, h).get();
+    }
+
     public ImageRequest targetSize(int w, int h) {
         targetWidth = w;
         targetHeight = h;
@@ -126,6 +316,30 @@ public class ImageRequest {
         return this;
     }
 
+    public ImageRequest copy() {
+        ImageRequest copy = attachTarget == null ? new ImageRequest() : new ImageRequest(attachTarget);
+        copy.url = url;
+        copy.transformer = transformer;
+        copy.defer = defer;
+        copy.inCircle = inCircle;
+        copy.prebakedCircle = prebakedCircle;
+        copy.config = config;
+        copy.placeholderRes = placeholderRes;
+        copy.blur = blur;
+        copy.blurRadius = blurRadius;
+        copy.blurSampling = blurSampling;
+        copy.disableTransformation = disableTransformation;
+        copy.scaleMode = scaleMode;
+        copy.lowQuality = lowQuality;
+        copy.upgrade = upgrade;
+        copy.region = region == null ? null : new Rect(region);
+        copy.targetWidth = targetWidth;
+        copy.targetHeight = targetHeight;
+        copy.sourceUrl = sourceUrl;
+        copy.urlVariants = urlVariants == null ? null : urlVariants.copy();
+        return copy;
+    }
+
     public int getTargetWidth() {
         return targetWidth;
     }
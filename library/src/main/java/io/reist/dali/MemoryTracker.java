@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.reist.dali.drawables.DaliDrawable;
+
+/**
+ * Counts bytes held by live {@link DaliDrawable}s, i.e. the ones which have not been garbage
+ * collected yet. A bitmap shared by several drawables is counted for each of them.
+ */
+public class MemoryTracker {
+
+    private final MemoryLedger ledger = new MemoryLedger();
+
+    private final ReferenceQueue<DaliDrawable> queue = new ReferenceQueue<>();
+
+    /**
+     * Keeps the references themselves from being collected before they are enqueued
+     */
+    private final Set<DrawableReference> references =
+            Collections.synchronizedSet(new HashSet<DrawableReference>());
+
+    public void track(@NonNull DaliDrawable drawable, @Nullable Object attachTarget, @Nullable String url) {
+
+        int bytes = drawable.getByteCount();
+        if (bytes <= 0) {
+            return;
+        }
+
+        String host = url == null ? null : Uri.parse(url).getHost();
+
+        references.add(new DrawableReference(drawable, queue, attachTarget, host, bytes));
+        ledger.add(attachTarget, host, bytes);
+
+        expunge();
+
+    }
+
+    private void expunge() {
+        DrawableReference reference;
+        while ((reference = (DrawableReference) queue.poll()) != null) {
+            if (references.remove(reference)) {
+                ledger.remove(reference.attachTarget.get(), reference.host, reference.bytes);
+            }
+        }
+    }
+
+    public long getBytes() {
+        expunge();
+        return ledger.getBytes();
+    }
+
+    void fill(@NonNull DaliMetrics metrics) {
+        expunge();
+        metrics.drawableBytes = ledger.getBytes();
+        metrics.drawableCount = ledger.getCount();
+        metrics.drawableBytesByAttachTarget = ledger.getBytesByAttachTarget();
+        metrics.drawableBytesByHost = ledger.getBytesByHost();
+    }
+
+    private static class DrawableReference extends WeakReference<DaliDrawable> {
+
+        final WeakReference<Object> attachTarget;
+        final String host;
+        final int bytes;
+
+        DrawableReference(
+                DaliDrawable drawable,
+                ReferenceQueue<DaliDrawable> queue,
+                Object attachTarget,
+                String host,
+                int bytes
+        ) {
+            super(drawable, queue);
+            this.attachTarget = new WeakReference<>(attachTarget);
+            this.host = host;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+/**
+ * An {@link ImageLoader} which can initialize its engine ahead of the first request, so that
+ * the first screen doesn't wait for it on the main thread.
+ *
+ * @see Dali#warmUp(Context)
+ */
+public interface Warmable {
+
+    /**
+     * Called on a background thread, may block until everything is ready
+     */
+    @WorkerThread
+    void warmUp(@NonNull Context context);
+
+}
@@ -19,6 +19,7 @@ package io.reist.dali.drawables;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
@@ -28,6 +29,11 @@ import io.reist.dali.ScaleMode;
 
 public class CircleFadingDaliDrawable extends FadingDaliDrawable {
 
+    /**
+     * The bitmap is already cut into a circle, so it's drawn as a plain rectangle
+     */
+    private final boolean prebaked;
+
     public CircleFadingDaliDrawable(
             @Nullable Bitmap bitmap,
             @NonNull ScaleMode scaleMode,
@@ -37,11 +43,81 @@ public class CircleFadingDaliDrawable extends FadingDaliDrawable {
             @Nullable Bitmap placeholderBitmap,
             boolean noFade
     ) {
-        super(bitmap, scaleMode, targetWidth, targetHeight, placeholder, placeholderBitmap, noFade);
+        this(bitmap, null, scaleMode, targetWidth, targetHeight, placeholder, placeholderBitmap, noFade);
+    }
+
+    public CircleFadingDaliDrawable(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            @Nullable Drawable placeholder,
+            @Nullable Bitmap placeholderBitmap,
+            boolean noFade
+    ) {
+        this(bitmap, region, scaleMode, targetWidth, targetHeight, placeholder, placeholderBitmap, noFade, false);
+    }
+
+    /**
+     * @param prebaked  true if the bitmap is a square with the circle already cut out and
+     *                  transparent corners, it's placed inside the target the same way the circle
+     *                  would be, regardless of the scale mode
+     */
+    public CircleFadingDaliDrawable(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            @Nullable Drawable placeholder,
+            @Nullable Bitmap placeholderBitmap,
+            boolean noFade,
+            boolean prebaked
+    ) {
+        super(
+                bitmap,
+                region,
+                prebaked ? ScaleMode.CENTER_INSIDE : scaleMode,
+                targetWidth,
+                targetHeight,
+                placeholder,
+                placeholderBitmap,
+                noFade
+        );
+        this.prebaked = prebaked;
+    }
+
+    private CircleFadingDaliDrawable(@NonNull DaliDrawableState state, boolean prebaked) {
+        super(state);
+        this.prebaked = prebaked;
+    }
+
+    @NonNull
+    @Override
+    ConstantState createConstantState(@NonNull final DaliDrawableState state) {
+        return new ConstantState() {
+
+            @NonNull
+            @Override
+            public Drawable newDrawable() {
+                return new CircleFadingDaliDrawable(state, prebaked);
+            }
+
+            @Override
+            public int getChangingConfigurations() {
+                return 0;
+            }
+
+        };
     }
 
     @Override
     protected void drawBitmap(@NonNull Canvas canvas, RectF dst, Paint paint) {
+        if (prebaked) {
+            super.drawBitmap(canvas, dst, paint);
+            return;
+        }
         float radius = Math.min(targetWidth, targetHeight) / 2;
         canvas.drawCircle(
                 dst.centerX(),
@@ -51,6 +127,10 @@ public class CircleFadingDaliDrawable extends FadingDaliDrawable {
         );
     }
 
+    public boolean isPrebaked() {
+        return prebaked;
+    }
+
     @Override
     protected void drawPlaceholder(@NonNull Canvas canvas, RectF dst, Paint paint) {
         float radius = Math.min(targetWidth, targetHeight) / 2;
@@ -20,11 +20,10 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -33,20 +32,29 @@ import io.reist.dali.ScaleMode;
 
 public class DaliDrawable extends Drawable {
 
-    private final ScaleMode scaleMode;
+    /**
+     * Called when the drawable has grown so much that its bitmap looks blurry
+     */
+    public interface UpgradeListener {
 
-    protected final float targetWidth;
-    protected final float targetHeight;
+        void onUpgradeNeeded(@NonNull DaliDrawable drawable);
+
+    }
+
+    private DaliDrawableState state;
+
+    protected float targetWidth;
+    protected float targetHeight;
+
+    @Nullable
+    private UpgradeListener upgradeListener;
+    private float upgradeFactor;
 
     private int alpha = 255;
     private ColorFilter colorFilter = null;
 
-    private final float bitmapWidth;
-    private final float bitmapHeight;
-    private final RectF bitmapDst = new RectF();
-
     @Nullable
-    private Paint bitmapPaint;
+    private ConstantState constantState;
 
     public DaliDrawable(
             @Nullable Bitmap bitmap,
@@ -54,107 +62,114 @@ public class DaliDrawable extends Drawable {
             float targetWidth,
             float targetHeight
     ) {
+        this(bitmap, null, scaleMode, targetWidth, targetHeight);
+    }
 
-        this.scaleMode = scaleMode;
-        this.targetWidth = targetWidth;
-        this.targetHeight = targetHeight;
-
-        if (bitmap == null) {
-            bitmapWidth = -1;
-            bitmapHeight = -1;
-        } else {
-
-            bitmapWidth = bitmap.getWidth();
-            bitmapHeight = bitmap.getHeight();
-
-            BitmapShader bitmapShader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-            transform(bitmapWidth, bitmapHeight, bitmapShader, bitmapDst);
-
-            bitmapPaint = new Paint();
-            bitmapPaint.setShader(bitmapShader);
-
-        }
+    /**
+     * @param region    a part of the bitmap to draw, e.g. an icon of a sprite sheet. The bitmap
+     *                  is shared, so only the area of the region is counted in
+     *                  {@link #getByteCount()}.
+     */
+    public DaliDrawable(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight
+    ) {
+        this(DaliDrawableState.obtain(bitmap, region, scaleMode, targetWidth, targetHeight));
+    }
 
+    DaliDrawable(@NonNull DaliDrawableState state) {
+        this.state = state;
+        this.targetWidth = state.targetWidth;
+        this.targetHeight = state.targetHeight;
     }
 
     @Override
     public void draw(@NonNull Canvas canvas) {
 
-        if (alpha == 0 || bitmapWidth <= 0 || !hasBitmap() || targetHeight <= 0 || bitmapPaint == null) {
+        Paint bitmapPaint = state.bitmapPaint;
+
+        if (alpha == 0 || !hasBitmap() || targetHeight <= 0 || bitmapPaint == null) {
             return;
         }
 
+        // the paint is shared, so it's set up right before drawing
         bitmapPaint.setColorFilter(colorFilter);
         bitmapPaint.setAlpha(alpha);
 
-        drawBitmap(canvas, bitmapDst, bitmapPaint);
+        drawBitmap(canvas, state.bitmapDst, bitmapPaint);
 
     }
 
-    @SuppressWarnings("SuspiciousNameCombination")
-    void transform(
-            float bitmapWidth,
-            float bitmapHeight,
-            BitmapShader bitmapShader,
-            RectF dst
-    ) {
+    /**
+     * Lays the bitmap out again when the drawable is resized, e.g. when its view is rotated.
+     * Nothing is reloaded unless the bitmap is stretched too much.
+     */
+    @Override
+    protected void onBoundsChange(Rect bounds) {
 
-        float scaleX, scaleY;
-
-        switch (scaleMode) {
-
-            case CENTER_CROP:
-                if (bitmapWidth * targetHeight > targetWidth * bitmapHeight) {
-                    scaleX = targetHeight / bitmapHeight;
-                } else {
-                    scaleX = targetWidth / bitmapWidth;
-                }
-                scaleY = scaleX;
-                break;
-
-            case CENTER_INSIDE:
-                if (bitmapWidth * targetHeight > targetWidth * bitmapHeight) {
-                    scaleX = targetWidth / bitmapWidth;
-                } else {
-                    scaleX = targetHeight / bitmapHeight;
-                }
-                scaleY = scaleX;
-                break;
-
-            case FIT_XY:
-                scaleX = targetWidth / bitmapWidth;
-                scaleY = targetHeight / bitmapHeight;
-                break;
+        super.onBoundsChange(bounds);
 
-            default:
-                throw new IllegalArgumentException("scaleMode = " + scaleMode);
+        int width = bounds.width();
+        int height = bounds.height();
 
+        if (width <= 0 || height <= 0 || (width == targetWidth && height == targetHeight)) {
+            return;
         }
 
-        float viewWidthInImage = targetWidth / scaleX;
-        float viewHeightInImage = targetHeight / scaleY;
+        boolean grown = width > targetWidth || height > targetHeight;
 
-        Matrix bitmapMatrix = new Matrix();
-        bitmapMatrix.setTranslate(
-                viewWidthInImage / 2f - bitmapWidth / 2f,
-                viewHeightInImage / 2f - bitmapHeight / 2f
-        );
-        bitmapMatrix.postScale(scaleX, scaleY);
-        bitmapShader.setLocalMatrix(bitmapMatrix);
+        state = state.resize(width, height);
+        constantState = null;
+        targetWidth = width;
+        targetHeight = height;
+        onTargetSizeChanged();
 
-        float imageWidthInView = bitmapWidth * scaleX;
-        float imageHeightInView = bitmapHeight * scaleY;
+        UpgradeListener upgradeListener = this.upgradeListener;
+        if (grown && upgradeListener != null && state.isUpscaledBy(upgradeFactor)) {
+            // a single upgrade is enough, the new drawable has a listener of its own
+            this.upgradeListener = null;
+            upgradeListener.onUpgradeNeeded(this);
+        }
 
-        dst.left = targetWidth / 2f - imageWidthInView / 2f;
-        dst.top = targetHeight / 2f - imageHeightInView / 2f;
-        dst.right = dst.left + imageWidthInView;
-        dst.bottom = dst.top + imageHeightInView;
+    }
 
-        if (dst.left < 0) dst.left = 0;
-        if (dst.top < 0) dst.top = 0;
-        if (dst.right > targetWidth) dst.right = targetWidth;
-        if (dst.bottom > targetHeight) dst.bottom = targetHeight;
+    /**
+     * Called after {@link #targetWidth} and {@link #targetHeight} have been changed by a resize
+     */
+    protected void onTargetSizeChanged() {}
+
+    /**
+     * @param upgradeFactor     the listener is called if the drawable grows and its bitmap has to
+     *                          be stretched by more than this factor
+     */
+    public void setUpgradeListener(@Nullable UpgradeListener upgradeListener, float upgradeFactor) {
+        this.upgradeListener = upgradeListener;
+        this.upgradeFactor = upgradeFactor;
+    }
 
+    /**
+     * @param downsampled   false if the bitmap is the source image at its own size, such
+     *                      a drawable is never upgraded. Drawables are assumed to be downsampled
+     *                      by default.
+     */
+    public void setDownsampled(boolean downsampled) {
+        DaliDrawableState state = this.state.setDownsampled(downsampled);
+        if (state != this.state) {
+            this.state = state;
+            constantState = null;
+        }
+    }
+
+    void transform(
+            float bitmapWidth,
+            float bitmapHeight,
+            BitmapShader bitmapShader,
+            RectF dst
+    ) {
+        state.transform(0, 0, bitmapWidth, bitmapHeight, bitmapShader, dst);
     }
 
     protected void drawBitmap(@NonNull Canvas canvas, RectF dst, Paint bitmapPaint) {
@@ -197,8 +212,48 @@ public class DaliDrawable extends Drawable {
         return colorFilter;
     }
 
+    /**
+     * @return the number of bytes held by the bitmaps of this drawable
+     */
+    public int getByteCount() {
+        return state.bitmapByteCount;
+    }
+
     public boolean hasBitmap() {
-        return bitmapWidth > 0 && bitmapHeight > 0;
+        return state.hasBitmap();
+    }
+
+    /**
+     * The state is immutable and alpha and color filter belong to each drawable, so mutate()
+     * has nothing to copy
+     */
+    @Override
+    public ConstantState getConstantState() {
+        if (constantState == null) {
+            constantState = createConstantState(state);
+        }
+        return constantState;
+    }
+
+    /**
+     * @return a state which creates drawables of the same class showing the same bitmap
+     */
+    @NonNull
+    ConstantState createConstantState(@NonNull final DaliDrawableState state) {
+        return new ConstantState() {
+
+            @NonNull
+            @Override
+            public Drawable newDrawable() {
+                return new DaliDrawable(state);
+            }
+
+            @Override
+            public int getChangingConfigurations() {
+                return 0;
+            }
+
+        };
     }
 
     /*
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.drawables;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import io.reist.dali.ScaleMode;
+import io.reist.dali.Scaling;
+
+/**
+ * Everything a {@link DaliDrawable} needs to draw a bitmap: the shader with its matrix,
+ * the paint and the destination rectangle. None of it changes after creation, so drawables
+ * which show the same bitmap of the same size share a single state. Alpha, color filter and
+ * fading are kept by drawables.
+ */
+class DaliDrawableState {
+
+    /**
+     * The latest state of each bitmap, a list shows the same image in views of the same size
+     */
+    private static final Map<Bitmap, WeakReference<DaliDrawableState>> states = new WeakHashMap<>();
+
+    final ScaleMode scaleMode;
+    final float targetWidth;
+    final float targetHeight;
+
+    /**
+     * False if the bitmap is the source image at its own size, so reloading it for a bigger
+     * target gives nothing sharper
+     */
+    final boolean downsampled;
+
+    @Nullable
+    private final Bitmap bitmap;
+
+    @Nullable
+    private final Rect region;
+
+    private final int sourceWidth;
+    private final int sourceHeight;
+
+    final float bitmapWidth;
+    final float bitmapHeight;
+    final int bitmapByteCount;
+    final RectF bitmapDst = new RectF();
+
+    @Nullable
+    final Paint bitmapPaint;
+
+    private DaliDrawableState(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            boolean downsampled
+    ) {
+
+        this.bitmap = bitmap;
+        this.region = region == null ? null : new Rect(region);
+        this.sourceWidth = bitmap == null ? 0 : bitmap.getWidth();
+        this.sourceHeight = bitmap == null ? 0 : bitmap.getHeight();
+        this.scaleMode = scaleMode;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.downsampled = downsampled;
+
+        Rect bounds = null;
+        if (bitmap != null) {
+            bounds = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            if (region != null && !bounds.intersect(region)) {
+                bounds = null;
+            }
+        }
+
+        if (bounds == null) {
+            bitmapWidth = -1;
+            bitmapHeight = -1;
+            bitmapByteCount = 0;
+            bitmapPaint = null;
+        } else {
+
+            bitmapWidth = bounds.width();
+            bitmapHeight = bounds.height();
+            if (region == null) {
+                bitmapByteCount = bitmap.getByteCount();
+            } else {
+                bitmapByteCount = (int) ((long) bitmap.getByteCount() * bounds.width() * bounds.height() /
+                        ((long) bitmap.getWidth() * bitmap.getHeight()));
+            }
+
+            BitmapShader bitmapShader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            transform(bounds.left, bounds.top, bitmapWidth, bitmapHeight, bitmapShader, bitmapDst);
+
+            bitmapPaint = new Paint();
+            bitmapPaint.setShader(bitmapShader);
+
+        }
+
+    }
+
+    /**
+     * @return a shared state if there's one for the same bitmap and geometry, otherwise a new one
+     */
+    @NonNull
+    static DaliDrawableState obtain(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight
+    ) {
+        return obtain(bitmap, region, scaleMode, targetWidth, targetHeight, true);
+    }
+
+    @NonNull
+    private static DaliDrawableState obtain(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            boolean downsampled
+    ) {
+
+        if (bitmap == null) {
+            return new DaliDrawableState(null, region, scaleMode, targetWidth, targetHeight, downsampled);
+        }
+
+        synchronized (states) {
+
+            WeakReference<DaliDrawableState> reference = states.get(bitmap);
+            DaliDrawableState state = reference == null ? null : reference.get();
+
+            if (state == null || !state.matches(bitmap, region, scaleMode, targetWidth, targetHeight, downsampled)) {
+                state = new DaliDrawableState(bitmap, region, scaleMode, targetWidth, targetHeight, downsampled);
+                states.put(bitmap, new WeakReference<>(state));
+            }
+
+            return state;
+
+        }
+
+    }
+
+    /**
+     * Pooled bitmaps may be reconfigured, so the size is checked as well
+     */
+    private boolean matches(
+            @NonNull Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            boolean downsampled
+    ) {
+        return this.bitmap == bitmap &&
+                this.scaleMode == scaleMode &&
+                this.targetWidth == targetWidth &&
+                this.targetHeight == targetHeight &&
+                this.downsampled == downsampled &&
+                (this.region == null ? region == null : this.region.equals(region)) &&
+                sourceWidth == bitmap.getWidth() &&
+                sourceHeight == bitmap.getHeight();
+    }
+
+    /**
+     * @return a state for the same bitmap in a target of another size
+     */
+    @NonNull
+    DaliDrawableState resize(float targetWidth, float targetHeight) {
+        return obtain(bitmap, region, scaleMode, targetWidth, targetHeight, downsampled);
+    }
+
+    /**
+     * @return a state for the same bitmap which is known to be downsampled or not
+     */
+    @NonNull
+    DaliDrawableState setDownsampled(boolean downsampled) {
+        if (this.downsampled == downsampled) {
+            return this;
+        }
+        return obtain(bitmap, region, scaleMode, targetWidth, targetHeight, downsampled);
+    }
+
+    /**
+     * @return true if the bitmap is stretched by more than the given factor to fit the target
+     *          and a bigger one can be decoded from the source
+     */
+    boolean isUpscaledBy(float factor) {
+        if (!downsampled || !hasBitmap()) {
+            return false;
+        }
+        Scaling scaling = new Scaling().set(scaleMode, bitmapWidth, bitmapHeight, targetWidth, targetHeight);
+        return Math.max(scaling.scaleX, scaling.scaleY) > factor;
+    }
+
+    boolean hasBitmap() {
+        return bitmapWidth > 0 && bitmapHeight > 0;
+    }
+
+    /**
+     * Places the part of a bitmap which starts at (left, top) into the target. The rest of
+     * the bitmap stays outside of dst, so it's never drawn.
+     */
+    void transform(
+            float left,
+            float top,
+            float bitmapWidth,
+            float bitmapHeight,
+            BitmapShader bitmapShader,
+            RectF dst
+    ) {
+
+        Scaling scaling = new Scaling().set(scaleMode, bitmapWidth, bitmapHeight, targetWidth, targetHeight);
+
+        Matrix bitmapMatrix = new Matrix();
+        bitmapMatrix.setTranslate(scaling.translateX - left, scaling.translateY - top);
+        bitmapMatrix.postScale(scaling.scaleX, scaling.scaleY);
+        bitmapShader.setLocalMatrix(bitmapMatrix);
+
+        dst.set(scaling.left, scaling.top, scaling.right, scaling.bottom);
+
+    }
+
+}
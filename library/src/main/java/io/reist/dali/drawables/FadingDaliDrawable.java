@@ -21,6 +21,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
@@ -42,13 +43,30 @@ public class FadingDaliDrawable extends DaliDrawable {
 
     private final float placeholderWidth;
     private final float placeholderHeight;
+    private int placeholderByteCount;
     private final RectF placeholderDst = new RectF();
 
     @Nullable
     private Paint placeholderPaint;
 
+    @Nullable
+    private BitmapShader placeholderShader;
+
+    public FadingDaliDrawable(
+            @Nullable Bitmap bitmap,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            @Nullable Drawable placeholder,
+            @Nullable Bitmap placeholderBitmap,
+            boolean noFade
+    ) {
+        this(bitmap, null, scaleMode, targetWidth, targetHeight, placeholder, placeholderBitmap, noFade);
+    }
+
     public FadingDaliDrawable(
             @Nullable Bitmap bitmap,
+            @Nullable Rect region,
             @NonNull ScaleMode scaleMode,
             float targetWidth,
             float targetHeight,
@@ -57,7 +75,7 @@ public class FadingDaliDrawable extends DaliDrawable {
             boolean noFade
     ) {
 
-        super(bitmap, scaleMode, targetWidth, targetHeight);
+        super(bitmap, region, scaleMode, targetWidth, targetHeight);
 
         if (noFade) {
             progress = bitmap == null ? 0 : 1;
@@ -86,10 +104,11 @@ public class FadingDaliDrawable extends DaliDrawable {
                         DaliUtils.getSafeConfig(bitmap)
                 );
             }
+            placeholderByteCount = placeholderBitmap.getByteCount();
             Canvas canvas = new Canvas(placeholderBitmap);
             placeholder.setBounds(0, 0, (int) placeholderWidth, (int) placeholderHeight);
             placeholder.draw(canvas);
-            BitmapShader placeholderShader = new BitmapShader(
+            placeholderShader = new BitmapShader(
                     placeholderBitmap,
                     Shader.TileMode.CLAMP,
                     Shader.TileMode.CLAMP
@@ -103,6 +122,47 @@ public class FadingDaliDrawable extends DaliDrawable {
 
     }
 
+    /**
+     * Creates a copy which shows the bitmap right away
+     */
+    FadingDaliDrawable(@NonNull DaliDrawableState state) {
+        super(state);
+        originalAlpha = 255;
+        placeholderWidth = -1f;
+        placeholderHeight = -1f;
+    }
+
+    @NonNull
+    @Override
+    ConstantState createConstantState(@NonNull final DaliDrawableState state) {
+        return new ConstantState() {
+
+            @NonNull
+            @Override
+            public Drawable newDrawable() {
+                return new FadingDaliDrawable(state);
+            }
+
+            @Override
+            public int getChangingConfigurations() {
+                return 0;
+            }
+
+        };
+    }
+
+    @Override
+    protected void onTargetSizeChanged() {
+        if (placeholderShader != null) {
+            transform(placeholderWidth, placeholderHeight, placeholderShader, placeholderDst);
+        }
+    }
+
+    @Override
+    public int getByteCount() {
+        return super.getByteCount() + placeholderByteCount;
+    }
+
     @SuppressLint("NewApi")
     @Override
     public void draw(@NonNull Canvas canvas) {
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.Downsampler;
+import com.bumptech.glide.load.resource.bitmap.StreamBitmapDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.reist.dali.DecodeBudget;
+
+/**
+ * Decodes streams the same way Glide does by default (see {@link Downsampler#AT_LEAST}) but
+ * admits a decode only when it fits into a {@link DecodeBudget}. The budget is held until
+ * the decoded bitmap has been transformed, see {@link BudgetedTransformation}, or recycled.
+ */
+class BudgetedBitmapDecoder implements ResourceDecoder<InputStream, Bitmap> {
+
+    private static final String ID = BudgetedBitmapDecoder.class.getName();
+
+    /**
+     * Downsampling stops here, a decode which doesn't fit even with this sample size waits
+     */
+    private static final int MAX_SAMPLE_SIZE = 64;
+
+    private final DecodeBudget budget;
+    private final BitmapPool bitmapPool;
+    private final DecodeFormat decodeFormat;
+
+    BudgetedBitmapDecoder(DecodeBudget budget, BitmapPool bitmapPool, DecodeFormat decodeFormat) {
+        this.budget = budget;
+        this.bitmapPool = bitmapPool;
+        this.decodeFormat = decodeFormat;
+    }
+
+    @Override
+    public Resource<Bitmap> decode(InputStream source, int width, int height) throws IOException {
+        BudgetedDownsampler downsampler = new BudgetedDownsampler(budget, getBytesPerPixel(decodeFormat));
+        Resource<Bitmap> resource = null;
+        try {
+            resource = new StreamBitmapDecoder(downsampler, bitmapPool, decodeFormat).decode(source, width, height);
+        } finally {
+            if (resource == null) {
+                downsampler.release();
+            }
+        }
+        return resource == null ? null : new BudgetedResource(resource, budget, downsampler.detach());
+    }
+
+    /**
+     * Glide falls back to ARGB_8888 for images with alpha even if RGB_565 is preferred, so
+     * the estimate for RGB_565 is optimistic for such images
+     */
+    private static int getBytesPerPixel(DecodeFormat decodeFormat) {
+        return decodeFormat == DecodeFormat.PREFER_RGB_565 ? 2 : 4;
+    }
+
+    @Override
+    public String getId() {
+        return ID + "(" + decodeFormat.name() + ")";
+    }
+
+    /**
+     * Acquires the budget when Glide asks for a sample size, that's when the source dimensions
+     * are known but nothing has been allocated yet
+     */
+    private static class BudgetedDownsampler extends Downsampler {
+
+        private final DecodeBudget budget;
+        private final int bytesPerPixel;
+
+        private long acquired;
+
+        BudgetedDownsampler(DecodeBudget budget, int bytesPerPixel) {
+            this.budget = budget;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        @Override
+        protected int getSampleSize(int inWidth, int inHeight, int outWidth, int outHeight) {
+
+            release();
+
+            // the same as AT_LEAST, Glide rounds it down to a power of two
+            int sampleSize = Math.max(1, Integer.highestOneBit(Math.min(inHeight / outHeight, inWidth / outWidth)));
+
+            if (budget.isDownsamplingAllowed()) {
+
+                int downsampled = sampleSize;
+                while (downsampled <= MAX_SAMPLE_SIZE) {
+                    long bytes = DecodeBudget.estimate(inWidth, inHeight, downsampled, bytesPerPixel);
+                    if (budget.tryAcquire(bytes)) {
+                        acquired = bytes;
+                        if (downsampled != sampleSize) {
+                            budget.onDownsampled();
+                        }
+                        return downsampled;
+                    }
+                    downsampled *= 2;
+                }
+
+            }
+
+            long bytes = DecodeBudget.estimate(inWidth, inHeight, sampleSize, bytesPerPixel);
+            try {
+                budget.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            acquired = bytes;
+
+            return sampleSize;
+
+        }
+
+        void release() {
+            budget.release(detach());
+        }
+
+        /**
+         * @return the acquired bytes which the caller has to release from now on
+         */
+        long detach() {
+            long bytes = acquired;
+            acquired = 0;
+            return bytes;
+        }
+
+        @Override
+        public String getId() {
+            return ID;
+        }
+
+    }
+
+    /**
+     * A decoded bitmap which holds its share of the budget
+     */
+    static class BudgetedResource implements Resource<Bitmap> {
+
+        private final Resource<Bitmap> resource;
+        private final DecodeBudget budget;
+
+        private long bytes;
+
+        BudgetedResource(Resource<Bitmap> resource, DecodeBudget budget, long bytes) {
+            this.resource = resource;
+            this.budget = budget;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Releases the budget, the bitmap stays as it is
+         */
+        void releaseBudget() {
+            long bytes;
+            synchronized (this) {
+                bytes = this.bytes;
+                this.bytes = 0;
+            }
+            if (bytes > 0) {
+                budget.release(bytes);
+            }
+        }
+
+        @Override
+        public Bitmap get() {
+            return resource.get();
+        }
+
+        @Override
+        public int getSize() {
+            return resource.getSize();
+        }
+
+        @Override
+        public void recycle() {
+            releaseBudget();
+            resource.recycle();
+        }
+
+    }
+
+}
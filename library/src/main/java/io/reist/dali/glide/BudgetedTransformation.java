@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+
+import java.util.List;
+
+/**
+ * Runs transformations one after another, like {@link com.bumptech.glide.load.MultiTransformation},
+ * and then releases the {@link io.reist.dali.DecodeBudget} of the decoded bitmap. Glide recycles
+ * the decoded bitmap right after the transformation, so the budget covers both the decoded
+ * bitmap and its transformed copy.
+ */
+class BudgetedTransformation implements Transformation<Bitmap> {
+
+    private final List<Transformation<Bitmap>> transformations;
+    private final String id;
+
+    BudgetedTransformation(List<Transformation<Bitmap>> transformations) {
+        this.transformations = transformations;
+        StringBuilder id = new StringBuilder();
+        for (Transformation<Bitmap> transformation : transformations) {
+            id.append(transformation.getId());
+        }
+        this.id = id.toString();
+    }
+
+    @Override
+    public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+
+        try {
+
+            Resource<Bitmap> current = resource;
+
+            for (Transformation<Bitmap> transformation : transformations) {
+                Resource<Bitmap> transformed = transformation.transform(current, outWidth, outHeight);
+                if (current != resource && current != transformed) {
+                    current.recycle();
+                }
+                current = transformed;
+            }
+
+            return current;
+
+        } finally {
+            if (resource instanceof BudgetedBitmapDecoder.BudgetedResource) {
+                ((BudgetedBitmapDecoder.BudgetedResource) resource).releaseBudget();
+            }
+        }
+
+    }
+
+    /**
+     * The same as the id of {@link com.bumptech.glide.load.MultiTransformation}, so that
+     * results cached with and without the budget are interchangeable
+     */
+    @Override
+    public String getId() {
+        return id;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Skips decoding of a stream if its job has been cancelled while the data was being fetched and
+ * drops the decoded bitmap if the job has been cancelled while decoding, so that it's not
+ * transformed and written to the disk cache for nothing.
+ *
+ * Glide cancels a job when the last request waiting for it is cleared, calls
+ * {@link com.bumptech.glide.load.data.DataFetcher#cancel()} and interrupts the job's thread.
+ * The interrupt is used as a cancellation token because it belongs to the job rather than to
+ * one of the requests which have joined it. A download which
+ * {@link io.reist.dali.CancellationPolicy} lets finish is not affected, the fetcher hands it
+ * over to a thread of its own.
+ */
+class CancellableBitmapDecoder implements ResourceDecoder<InputStream, Bitmap> {
+
+    private final ResourceDecoder<InputStream, Bitmap> decoder;
+
+    CancellableBitmapDecoder(ResourceDecoder<InputStream, Bitmap> decoder) {
+        this.decoder = decoder;
+    }
+
+    static boolean isCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    @Override
+    public Resource<Bitmap> decode(InputStream source, int width, int height) throws IOException {
+
+        if (isCancelled()) {
+            throw new InterruptedIOException("Cancelled before decoding");
+        }
+
+        Resource<Bitmap> resource = decoder.decode(source, width, height);
+
+        if (resource != null && isCancelled()) {
+            resource.recycle();
+            throw new InterruptedIOException("Cancelled after decoding");
+        }
+
+        return resource;
+
+    }
+
+    /**
+     * The same as the id of the wrapped decoder, a cancelled decode never gets to the cache
+     */
+    @Override
+    public String getId() {
+        return decoder.getId();
+    }
+
+}
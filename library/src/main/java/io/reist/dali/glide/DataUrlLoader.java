@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.util.Base64;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.stream.StreamModelLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads base64 encoded data: urls. The data is decoded on Glide's source thread, and the url is
+ * the cache key, so an image which is bound again comes from the memory cache.
+ */
+public class DataUrlLoader implements StreamModelLoader<String> {
+
+    private static final String SCHEME = "data:";
+    private static final String BASE64 = ";base64,";
+
+    public static boolean isDataUrl(String url) {
+        return url != null && url.regionMatches(true, 0, SCHEME, 0, SCHEME.length());
+    }
+
+    @Override
+    public DataFetcher<InputStream> getResourceFetcher(String model, int width, int height) {
+        return new DataUrlFetcher(model);
+    }
+
+    private static class DataUrlFetcher implements DataFetcher<InputStream> {
+
+        private final String url;
+
+        DataUrlFetcher(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public InputStream loadData(Priority priority) throws Exception {
+
+            int dataStart = url.indexOf(BASE64);
+            if (dataStart < 0) {
+                throw new IOException("Only base64 encoded data urls are supported");
+            }
+
+            try {
+                return new ByteArrayInputStream(
+                        Base64.decode(url.substring(dataStart + BASE64.length()), Base64.DEFAULT)
+                );
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad base64 data", e);
+            }
+
+        }
+
+        @Override
+        public void cleanup() {}
+
+        @Override
+        public String getId() {
+            return url;
+        }
+
+        @Override
+        public void cancel() {}
+
+    }
+
+}
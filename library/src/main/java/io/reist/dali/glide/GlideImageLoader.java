@@ -17,13 +17,23 @@
 package io.reist.dali.glide;
 
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.support.v4.app.FragmentActivity;
 import android.view.View;
 
@@ -31,30 +41,53 @@ import com.bumptech.glide.BitmapTypeRequest;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.RequestManager;
 import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.load.resource.bitmap.StreamBitmapDecoder;
 import com.bumptech.glide.load.resource.bitmap.TransformationUtils;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.animation.NoAnimation;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.Request;
 import com.bumptech.glide.request.animation.ViewPropertyAnimation;
 import com.bumptech.glide.request.target.BaseTarget;
 import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.signature.StringSignature;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
+import io.reist.dali.BitmapHandle;
+import io.reist.dali.BlockingImageLoader;
 import io.reist.dali.DaliCallback;
+import io.reist.dali.DaliErrorCallback;
+import io.reist.dali.DaliHandleCallback;
 import io.reist.dali.DaliLoader;
 import io.reist.dali.DaliUtils;
-import io.reist.dali.ImageLoader;
+import io.reist.dali.DecodeBudget;
 import io.reist.dali.ImageRequest;
+import io.reist.dali.ParkingLot;
+import io.reist.dali.Pipeline;
 import io.reist.dali.ScaleMode;
+import io.reist.dali.Scaling;
+import io.reist.dali.SizeBucketing;
+import io.reist.dali.StackBlur;
+import io.reist.dali.Warmable;
 import io.reist.dali.drawables.CircleFadingDaliDrawable;
 import io.reist.dali.drawables.DaliDrawable;
 import io.reist.dali.drawables.FadingDaliDrawable;
-import jp.wasabeef.glide.transformations.BlurTransformation;
 
 import static io.reist.dali.DaliUtils.getApplicationContext;
 import static io.reist.dali.DaliUtils.getPlaceholder;
@@ -68,7 +101,7 @@ import static io.reist.dali.DaliUtils.setDrawable;
  * Glide bitmap recycling behaviours apply. See
  * https://github.com/bumptech/glide/wiki/Resource-re-use-in-Glide for details.
  */
-public class GlideImageLoader implements ImageLoader {
+public class GlideImageLoader implements BlockingImageLoader, Warmable {
 
     /**
      * This is to force Glide to generate dummy animations for non-cached images
@@ -80,11 +113,48 @@ public class GlideImageLoader implements ImageLoader {
 
     };
 
-    private static final int BLUR_RADIUS = 8;           // todo move to ImageRequest as a parameter
-    private static final int BLUR_SAMPLING = 16;        // todo move to ImageRequest as a parameter
+    /**
+     * The same signature is used by every warm-up, so that a single entry goes to the disk cache
+     */
+    private static final String WARM_UP_KEY = GlideImageLoader.class.getName() + ".warmUp";
+
+    /**
+     * Blurs rows and columns of large images on all cores
+     */
+    private static StackBlur stackBlur;
 
     private final Map<Object, BaseTarget> targetMap = new WeakHashMap<>();
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Holds requests of recycled views. Glide attaches a new request to an in-flight one with
+     * the same key, so a parked request is reused simply by not clearing it until the new
+     * request has started.
+     */
+    private ParkingLot<GlideImageLoaderViewTarget> parkingLot;
+
+    private final ParkingLot.Evictor<GlideImageLoaderViewTarget> parkingEvictor =
+            new ParkingLot.Evictor<GlideImageLoaderViewTarget>() {
+
+                @Override
+                public void evict(GlideImageLoaderViewTarget target) {
+                    Glide.clear(target);
+                }
+
+            };
+
+    private final Runnable parkingTrimmer = new Runnable() {
+
+        @Override
+        public void run() {
+            if (parkingLot != null) {
+                parkingLot.trim(SystemClock.uptimeMillis());
+            }
+        }
+
+    };
+
     @Override
     public void load(@NonNull ImageRequest request, @NonNull View view, boolean background) {
 
@@ -94,11 +164,19 @@ public class GlideImageLoader implements ImageLoader {
             return;
         }
 
+        ImageRequest original = request;
+
         if (request.transformer != null) {
             request = request.transformer.transform(request);
         }
 
-        BitmapPool bitmapPool = Glide.get(appContext).getBitmapPool();
+        Glide glide = Glide.get(appContext);
+
+        if (DaliLoader.getInstance().shouldTrimMemory()) {
+            glide.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        }
+
+        BitmapPool bitmapPool = glide.getBitmapPool();
 
         int targetWidth = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
         int targetHeight = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
@@ -117,15 +195,35 @@ public class GlideImageLoader implements ImageLoader {
         BitmapTypeRequest bitmapTypeRequest = createBitmapTypeRequest(request, appContext);
         bitmapTypeRequest.animate(EMPTY_ANIMATOR);
 
+        SizeBucketing sizeBucketing = DaliLoader.getInstance().getSizeBucketing();
+        String key = getRequestKey(request, sizeBucketing);
+
+        // regions are decoded at the original size, see createBitmapTypeRequest()
+        int decodeWidth = 0;
+        int decodeHeight = 0;
+        if (request.region == null) {
+            decodeWidth = sizeBucketing.getWidth(request.getTargetWidth(), request.getTargetHeight());
+            decodeHeight = sizeBucketing.getHeight(request.getTargetWidth(), request.getTargetHeight());
+        }
+
         enqueue(
                 view,
                 bitmapTypeRequest,
                 new GlideImageLoaderViewTarget(
+                        this,
+                        key,
+                        original,
+                        request.attachTarget,
+                        request.url,
                         view,
                         targetWidth,
                         targetHeight,
+                        decodeWidth,
+                        decodeHeight,
                         request.scaleMode,
+                        request.region,
                         request.inCircle,
+                        isCirclePrebaked(request),
                         background,
                         bitmapPool.get(
                                 targetWidth,
@@ -135,6 +233,85 @@ public class GlideImageLoader implements ImageLoader {
                 )
         );
 
+        // the new request has joined the parked one, so the latter can go
+        GlideImageLoaderViewTarget parked = getParkingLot().unpark(key, SystemClock.uptimeMillis());
+        if (parked != null) {
+            Glide.clear(parked);
+        }
+
+    }
+
+    /**
+     * @return a key which is equal for requests which Glide executes as a single job
+     */
+    static String getRequestKey(ImageRequest request, SizeBucketing sizeBucketing) {
+        if (request.region != null) {
+            // all parts of an image share the original
+            return request.url + '|' + request.config;
+        }
+        int targetWidth = request.getTargetWidth();
+        int targetHeight = request.getTargetHeight();
+        return request.url + '|' +
+                sizeBucketing.getWidth(targetWidth, targetHeight) + 'x' +
+                sizeBucketing.getHeight(targetWidth, targetHeight) + '|' +
+                request.config + '|' +
+                request.scaleMode + '|' +
+                isCirclePrebaked(request) + '|' +
+                (request.blur ? request.blurRadius + "/" + request.blurSampling : "false") + '|' +
+                request.disableTransformation;
+    }
+
+    private ParkingLot<GlideImageLoaderViewTarget> getParkingLot() {
+
+        DaliLoader daliLoader = DaliLoader.getInstance();
+        int maxSize = daliLoader.getMaxParkedRequests();
+        long maxAge = daliLoader.getMaxParkingTime();
+
+        if (parkingLot == null || parkingLot.getMaxSize() != maxSize || parkingLot.getMaxAge() != maxAge) {
+            if (parkingLot != null) {
+                parkingLot.evictAll();
+            }
+            parkingLot = new ParkingLot<>(maxSize, maxAge, parkingEvictor);
+        }
+
+        return parkingLot;
+
+    }
+
+    /**
+     * @return true if the target's request keeps running without the view
+     */
+    private boolean park(GlideImageLoaderViewTarget target) {
+
+        Request request = target.getRequest();
+        ParkingLot<GlideImageLoaderViewTarget> parkingLot = getParkingLot();
+
+        if (request == null || !request.isRunning() || parkingLot.getMaxSize() <= 0) {
+            return false;
+        }
+
+        target.detach();
+        parkingLot.park(target.key, target, SystemClock.uptimeMillis());
+
+        mainHandler.removeCallbacks(parkingTrimmer);
+        mainHandler.postDelayed(parkingTrimmer, parkingLot.getMaxAge());
+
+        return true;
+
+    }
+
+    private void onParkedTargetDone(final GlideImageLoaderViewTarget target) {
+        if (parkingLot != null && parkingLot.remove(target.key, target)) {
+            // let Glide finish the callback before the resource is released to the memory cache
+            mainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    Glide.clear(target);
+                }
+
+            });
+        }
     }
 
     private void enqueue(Object o, BitmapTypeRequest bitmapTypeRequest, BaseTarget<Bitmap> target) {
@@ -162,39 +339,142 @@ public class GlideImageLoader implements ImageLoader {
         } else {
             throw new IllegalStateException("Attach target is " + attachTarget);
         }
-        bitmapTypeRequest = requestManager.load(request.url).asBitmap();
+        bitmapTypeRequest = load(requestManager, request);
 
         if (request.placeholderRes != 0) {
             bitmapTypeRequest.placeholder(request.placeholderRes);
         }
 
+        bitmapTypeRequest.diskCacheStrategy(getDiskCacheStrategy(request));
+
         int targetWidth = request.getTargetWidth();
         int targetHeight = request.getTargetHeight();
-        if (targetWidth > 0 && targetHeight > 0) {
-            bitmapTypeRequest.override(targetWidth, targetHeight);
+        if (request.region != null) {
+            // regions are given in pixels of the original, so it's neither resized nor transformed
+            bitmapTypeRequest.override(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL);
+            bitmapTypeRequest.dontTransform();
+        } else if (targetWidth > 0 && targetHeight > 0) {
+            SizeBucketing sizeBucketing = DaliLoader.getInstance().getSizeBucketing();
+            int sampling = request.blur ? request.blurSampling : 1;
+            // blurred images are decoded at the sampled size, the drawable stretches them
+            bitmapTypeRequest.override(
+                    Math.max(1, sizeBucketing.getWidth(targetWidth, targetHeight) / sampling),
+                    Math.max(1, sizeBucketing.getHeight(targetWidth, targetHeight) / sampling)
+            );
+        }
+
+        Pipeline pipeline = DaliLoader.getInstance().getPipeline();
+        DecodeBudget decodeBudget = DaliLoader.getInstance().getDecodeBudget();
+
+        if (pipeline != null) {
+            GlideImageLoaderModule.attachFetchExecutor(pipeline);
         }
 
-        if (!request.disableTransformation) {
+        List<Transformation<Bitmap>> transformations = new ArrayList<>(3);
+        if (!request.disableTransformation && request.region == null) {
+            transformations.add(staged(pipeline, new OnlyScaleDownTransformation(appContext, request.scaleMode)));
             if (request.blur) {
-                bitmapTypeRequest.transform(
-                        new OnlyScaleDownTransformation(appContext, request.scaleMode),
-                        new BlurTransformation(appContext, BLUR_RADIUS, BLUR_SAMPLING)
-                );
-            } else {
-                bitmapTypeRequest.transform(
-                        new OnlyScaleDownTransformation(appContext, request.scaleMode)
-                );
+                transformations.add(staged(pipeline, new StackBlurTransformation(appContext, request.blurRadius)));
             }
+            if (isCirclePrebaked(request)) {
+                // the id of the transformation is a part of the result key, so the circle is
+                // cached apart from the square image
+                transformations.add(staged(pipeline, new CircleMaskTransformation(appContext, request.scaleMode)));
+            }
+        }
+
+        if (decodeBudget != null) {
+            // the decoded bitmap is alive until it's transformed, so is its share of the budget
+            bitmapTypeRequest.transform(new BudgetedTransformation(transformations));
+        } else if (!transformations.isEmpty()) {
+            //noinspection unchecked
+            bitmapTypeRequest.transform(transformations.toArray(new Transformation[transformations.size()]));
         }
 
+        DecodeFormat decodeFormat = DecodeFormat.DEFAULT;
         if (request.config != null) {
-            bitmapTypeRequest.format(toGlideFormat(request.config));
+            decodeFormat = toGlideFormat(request.config);
+            bitmapTypeRequest.format(decodeFormat);
         }
 
+        // must go after format() which replaces the decoder
+        BitmapPool bitmapPool = Glide.get(appContext).getBitmapPool();
+        ResourceDecoder<InputStream, Bitmap> decoder;
+        if (decodeBudget != null) {
+            decoder = new BudgetedBitmapDecoder(decodeBudget, bitmapPool, decodeFormat);
+        } else {
+            decoder = new StreamBitmapDecoder(bitmapPool, decodeFormat);
+        }
+        if (pipeline != null) {
+            decoder = new StagedBitmapDecoder(pipeline.getDecodeStage(), decoder);
+        }
+        bitmapTypeRequest.imageDecoder(new CancellableBitmapDecoder(decoder));
+
         return bitmapTypeRequest;
 
     }
 
+    /**
+     * Glide only scales images down to the decode size, so a bitmap which would have to be
+     * stretched to fill that size is the source image itself
+     *
+     * @param decodeWidth   0 if the image is decoded at the original size
+     */
+    static boolean isDownsampled(Bitmap bitmap, ScaleMode scaleMode, int decodeWidth, int decodeHeight) {
+        if (decodeWidth <= 0 || decodeHeight <= 0) {
+            return false;
+        }
+        Scaling scaling = new Scaling().set(scaleMode, bitmap.getWidth(), bitmap.getHeight(), decodeWidth, decodeHeight);
+        return Math.max(scaling.scaleX, scaling.scaleY) <= 1;
+    }
+
+    private static boolean isCirclePrebaked(ImageRequest request) {
+        return request.inCircle &&
+                request.prebakedCircle &&
+                !request.disableTransformation &&
+                request.region == null;
+    }
+
+    private static synchronized StackBlur getStackBlur() {
+        if (stackBlur == null) {
+            stackBlur = new StackBlur(Runtime.getRuntime().availableProcessors());
+        }
+        return stackBlur;
+    }
+
+    @NonNull
+    private static Transformation<Bitmap> staged(
+            @Nullable Pipeline pipeline,
+            @NonNull Transformation<Bitmap> transformation
+    ) {
+        if (pipeline == null) {
+            return transformation;
+        } else {
+            return new StagedTransformation(pipeline.getTransformStage(), transformation);
+        }
+    }
+
+    /**
+     * Creates a Glide request for {@link ImageRequest#url}. Subclasses may load other models.
+     */
+    @NonNull
+    protected BitmapTypeRequest load(@NonNull RequestManager requestManager, @NonNull ImageRequest request) {
+        return requestManager.load(request.url).asBitmap();
+    }
+
+    @NonNull
+    protected DiskCacheStrategy getDiskCacheStrategy(@NonNull ImageRequest request) {
+        if (request.lowQuality) {
+            // the full quality request is going to follow, let it take the source from the disk
+            return DiskCacheStrategy.ALL;
+        } else if (request.upgrade) {
+            // Glide reads the source from the disk only if the strategy caches it
+            return DiskCacheStrategy.ALL;
+        } else {
+            return DiskCacheStrategy.RESULT;
+        }
+    }
+
     @Override
     public void load(@NonNull ImageRequest request, @NonNull DaliCallback callback) {
 
@@ -207,11 +487,103 @@ public class GlideImageLoader implements ImageLoader {
         enqueue(
                 callback,
                 createBitmapTypeRequest(request, appContext),
-                new GlideImageLoaderCallbackTarget(callback)
+                new GlideImageLoaderCallbackTarget(this, callback, request.region)
         );
 
     }
 
+    /**
+     * Glide decodes on its own threads even for synchronous requests, but the calling thread
+     * waits for the result the same way asynchronous loads do, with the same caches and
+     * the same in-flight jobs
+     */
+    @NonNull
+    @Override
+    public Bitmap get(@NonNull ImageRequest request) throws InterruptedException, ExecutionException {
+
+        Context appContext = getApplicationContext(request);
+
+        if (appContext == null) {
+            throw new ExecutionException(new IllegalStateException("No context for " + request.url));
+        }
+
+        int targetWidth = request.getTargetWidth();
+        int targetHeight = request.getTargetHeight();
+        if (targetWidth <= 0 || targetHeight <= 0 || request.region != null) {
+            targetWidth = Target.SIZE_ORIGINAL;
+            targetHeight = Target.SIZE_ORIGINAL;
+        }
+
+        // the bitmap belongs to the caller, so the request is never cleared
+        @SuppressWarnings("unchecked")
+        FutureTarget<Bitmap> futureTarget = createBitmapTypeRequest(request, appContext)
+                .into(targetWidth, targetHeight);
+
+        if (request.region == null) {
+            return futureTarget.get();
+        }
+
+        // the caller gets a copy, the original goes back to the cache
+        try {
+            return cut(futureTarget.get(), request.region);
+        } finally {
+            futureTarget.clear();
+        }
+
+    }
+
+    /**
+     * @return a new bitmap with the given part of the source
+     */
+    @NonNull
+    private static Bitmap cut(@NonNull Bitmap source, @NonNull Rect region) {
+        Rect bounds = new Rect(0, 0, source.getWidth(), source.getHeight());
+        if (!bounds.intersect(region)) {
+            throw new IllegalArgumentException("Region " + region + " is outside of " + bounds);
+        }
+        Bitmap part = Bitmap.createBitmap(source, bounds.left, bounds.top, bounds.width(), bounds.height());
+        if (part == source) {
+            // the region covers the whole image
+            part = source.copy(getSafeConfig(source), false);
+        }
+        return part;
+    }
+
+    /**
+     * Glide creates its pools, memory cache, executors and the http client of
+     * {@link GlideImageLoaderModule} when it's first accessed. The disk cache is opened when
+     * a job first looks into it, so a tiny image is decoded through it.
+     */
+    @WorkerThread
+    @Override
+    public void warmUp(@NonNull Context context) {
+
+        Context appContext = context.getApplicationContext();
+
+        Glide.get(appContext);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888).compress(Bitmap.CompressFormat.PNG, 100, out);
+
+        FutureTarget<Bitmap> futureTarget = Glide.with(appContext)
+                .load(out.toByteArray())
+                .asBitmap()
+                .signature(new StringSignature(WARM_UP_KEY))
+                .diskCacheStrategy(DiskCacheStrategy.RESULT)
+                .into(1, 1);
+
+        try {
+            futureTarget.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // nothing to do, the first request is just going to be slower
+        } finally {
+            Glide.clear(futureTarget);
+        }
+
+    }
+
     private static DecodeFormat toGlideFormat(Bitmap.Config config) {
         switch (config) {
 
@@ -229,10 +601,12 @@ public class GlideImageLoader implements ImageLoader {
 
     @Override
     public void cancel(@NonNull Object o) {
-        BaseTarget target = targetMap.get(o);
+        BaseTarget target = targetMap.remove(o);
         if (target != null) {
+            if (target instanceof GlideImageLoaderViewTarget && park((GlideImageLoaderViewTarget) target)) {
+                return;
+            }
             Glide.clear(target);
-            targetMap.remove(o);
         }
     }
 
@@ -243,6 +617,9 @@ public class GlideImageLoader implements ImageLoader {
             Glide.clear(target);
         }
         targetMap.clear();
+        if (parkingLot != null) {
+            parkingLot.evictAll();
+        }
     }
 
     /**
@@ -254,32 +631,61 @@ public class GlideImageLoader implements ImageLoader {
      */
     private static class GlideImageLoaderViewTarget extends SimpleTarget<Bitmap> {
 
-        private final WeakReference<View> view;
+        private final GlideImageLoader imageLoader;
+        private final String key;
+        private final ImageRequest request;
+        private final WeakReference<Object> attachTarget;
+        private final String url;
+
+        private WeakReference<View> view;
 
         private final int targetWidth;
         private final int targetHeight;
+        private final int decodeWidth;
+        private final int decodeHeight;
         private final ScaleMode scaleMode;
+        private final Rect region;
         private final boolean inCircle;
+        private final boolean prebakedCircle;
         private final boolean background;
 
         private final WeakReference<Bitmap> cached;
 
         private GlideImageLoaderViewTarget(
+                GlideImageLoader imageLoader,
+                String key,
+                ImageRequest request,
+                Object attachTarget,
+                String url,
                 View view,
                 int targetWidth,
                 int targetHeight,
+                int decodeWidth,
+                int decodeHeight,
                 ScaleMode scaleMode,
+                Rect region,
                 boolean inCircle,
+                boolean prebakedCircle,
                 boolean background,
                 Bitmap cached
         ) {
 
+            this.imageLoader = imageLoader;
+            this.key = key;
+            this.request = request;
+            this.attachTarget = new WeakReference<>(attachTarget);
+            this.url = url;
+
             this.view = new WeakReference<>(view);
 
             this.targetWidth = targetWidth;
             this.targetHeight = targetHeight;
+            this.decodeWidth = decodeWidth;
+            this.decodeHeight = decodeHeight;
             this.scaleMode = scaleMode;
+            this.region = region;
             this.inCircle = inCircle;
+            this.prebakedCircle = prebakedCircle;
             this.background = background;
 
             this.cached = new WeakReference<>(cached);
@@ -289,6 +695,13 @@ public class GlideImageLoader implements ImageLoader {
         @Override
         public void onLoadStarted(Drawable placeholder) {}
 
+        /**
+         * The result won't be delivered to the view anymore
+         */
+        void detach() {
+            view = new WeakReference<>(null);
+        }
+
         @Override
         public void onLoadFailed(Exception e, Drawable errorDrawable) {
             onImageReady(errorDrawable);
@@ -301,6 +714,7 @@ public class GlideImageLoader implements ImageLoader {
                 View view = this.view.get();
 
                 if (view == null) {
+                    imageLoader.onParkedTargetDone(this);
                     return;
                 }
 
@@ -311,12 +725,8 @@ public class GlideImageLoader implements ImageLoader {
                 }
 
             } finally {
-
-                ImageLoader mainImageLoader = DaliLoader.getInstance().getMainImageLoader();
-                if (mainImageLoader instanceof GlideImageLoader) {
-                    ((GlideImageLoader) mainImageLoader).targetMap.remove(this);
-                }
-
+                // the map is keyed by views, so the target is removed by value
+                imageLoader.targetMap.values().remove(this);
             }
 
         }
@@ -327,6 +737,7 @@ public class GlideImageLoader implements ImageLoader {
             View view = this.view.get();
 
             if (view == null) {
+                imageLoader.onParkedTargetDone(this);
                 return;
             }
 
@@ -338,16 +749,19 @@ public class GlideImageLoader implements ImageLoader {
             if (inCircle) {
                 drawable = new CircleFadingDaliDrawable(
                         resource,
+                        region,
                         scaleMode,
                         targetWidth,
                         targetHeight,
                         placeholder,
                         cached,
-                        noFade
+                        noFade,
+                        prebakedCircle
                 );
             } else {
                 drawable = new FadingDaliDrawable(
                         resource,
+                        region,
                         scaleMode,
                         targetWidth,
                         targetHeight,
@@ -357,6 +771,10 @@ public class GlideImageLoader implements ImageLoader {
                 );
             }
 
+            DaliLoader.getInstance().getMemoryTracker().track(drawable, attachTarget.get(), url);
+            drawable.setDownsampled(isDownsampled(resource, scaleMode, decodeWidth, decodeHeight));
+            DaliUtils.setUpgradeListener(drawable, request, view, background);
+
             onImageReady(drawable);
 
         }
@@ -371,11 +789,24 @@ public class GlideImageLoader implements ImageLoader {
 
     private static class GlideImageLoaderCallbackTarget extends SimpleTarget<Bitmap> {
 
+        private final GlideImageLoader imageLoader;
+        private final Rect region;
+
         private WeakReference<DaliCallback> callback;
 
-        GlideImageLoaderCallbackTarget(DaliCallback callback) {
+        /**
+         * Nothing else may reference a handle callback, so it's kept until it gets the handle
+         */
+        private DaliHandleCallback handleCallback;
+
+        GlideImageLoaderCallbackTarget(GlideImageLoader imageLoader, DaliCallback callback, Rect region) {
             super();
+            this.imageLoader = imageLoader;
+            this.region = region;
             this.callback = new WeakReference<>(callback);
+            if (callback instanceof DaliHandleCallback) {
+                this.handleCallback = (DaliHandleCallback) callback;
+            }
         }
 
         @Override
@@ -383,24 +814,85 @@ public class GlideImageLoader implements ImageLoader {
 
         @Override
         public void onLoadFailed(Exception e, Drawable errorDrawable) {
-            ImageLoader mainImageLoader = DaliLoader.getInstance().getMainImageLoader();
-            if (mainImageLoader instanceof GlideImageLoader) {
-                ((GlideImageLoader) mainImageLoader).targetMap.remove(this);
+
+            DaliCallback daliCallback = this.callback.get();
+            if (daliCallback instanceof DaliErrorCallback) {
+                ((DaliErrorCallback) daliCallback).onImageFailed(e);
             }
+
+            handleCallback = null;
+
+            imageLoader.targetMap.values().remove(this);
+
         }
 
         @Override
         public void onResourceReady(Bitmap resource, GlideAnimation<? super Bitmap> glideAnimation) {
 
+            if (region != null) {
+                resource = cutAndRelease(resource);
+            }
+
+            if (handleCallback != null) {
+                onHandleReady(resource);
+                return;
+            }
+
             DaliCallback daliCallback = this.callback.get();
             if (daliCallback != null) {
                 daliCallback.onImageLoaded(resource);
             }
 
-            ImageLoader mainImageLoader = DaliLoader.getInstance().getMainImageLoader();
-            if (mainImageLoader instanceof GlideImageLoader) {
-                ((GlideImageLoader) mainImageLoader).targetMap.remove(this);
-            }
+            imageLoader.targetMap.values().remove(this);
+
+        }
+
+        /**
+         * The callback gets a copy of the region, so the original can go back to the cache
+         */
+        private Bitmap cutAndRelease(Bitmap resource) {
+
+            Bitmap part = cut(resource, region);
+
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+
+                @Override
+                public void run() {
+                    Glide.clear(GlideImageLoaderCallbackTarget.this);
+                }
+
+            });
+
+            return part;
+
+        }
+
+        /**
+         * The resource is held by this target until the handle is finally released
+         */
+        private void onHandleReady(Bitmap resource) {
+
+            DaliHandleCallback handleCallback = this.handleCallback;
+            this.handleCallback = null;
+
+            imageLoader.targetMap.values().remove(this);
+
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            handleCallback.onImageLoaded(new BitmapHandle(resource, new Runnable() {
+
+                @Override
+                public void run() {
+                    mainHandler.post(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            Glide.clear(GlideImageLoaderCallbackTarget.this);
+                        }
+
+                    });
+                }
+
+            }));
 
         }
 
@@ -416,7 +908,7 @@ public class GlideImageLoader implements ImageLoader {
      * There's no equivalent for Picasso's onlyScaleDown in Glide. To achieve the same effect,
      * here goes BitmapTransformation
      */
-    private static class OnlyScaleDownTransformation extends BitmapTransformation {
+    static class OnlyScaleDownTransformation extends BitmapTransformation {
 
         static final String ID = OnlyScaleDownTransformation.class.getName();
 
@@ -430,87 +922,63 @@ public class GlideImageLoader implements ImageLoader {
         @Override
         protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
 
-            Bitmap transformed;
+            if (CancellableBitmapDecoder.isCancelled()) {
+                throw new CancellationException("Cancelled before transformation");
+            }
+
+            if (!Scaling.isScaledDown(scaleMode, toTransform.getWidth(), toTransform.getHeight(), outWidth, outHeight)) {
+                return toTransform;
+            }
 
-            float scale;
+            Bitmap transformed;
 
             Bitmap.Config safeConfig = getSafeConfig(toTransform);
 
             switch (scaleMode) {
 
-                case CENTER_CROP:
-
-                    // pick greater scale
-                    if (toTransform.getWidth() * outHeight > outWidth * toTransform.getHeight()) {
-                        scale = (float) outHeight / (float) toTransform.getHeight();
-                    } else {
-                        scale = (float) outWidth / (float) toTransform.getWidth();
+                case CENTER_CROP: {
+                    final Bitmap toReuse = pool.get(
+                            outWidth,
+                            outHeight,
+                            safeConfig
+                    );
+                    transformed = TransformationUtils.centerCrop(toReuse, toTransform, outWidth, outHeight);
+                    if (toReuse != null && toReuse != transformed && !pool.put(toReuse)) {
+                        toReuse.recycle();
                     }
-
-                    if (scale < 1f) {
-                        final Bitmap toReuse = pool.get(
-                                outWidth,
-                                outHeight,
-                                safeConfig
-                        );
-                        transformed = TransformationUtils.centerCrop(toReuse, toTransform, outWidth, outHeight);
-                        if (toReuse != null && toReuse != transformed && !pool.put(toReuse)) {
-                            toReuse.recycle();
-                        }
-                    } else {
-                        transformed = toTransform;
-                    }
-
                     break;
+                }
 
                 case CENTER_INSIDE:
-
-                    // pic lesser scale
-                    if (toTransform.getWidth() * outHeight > outWidth * toTransform.getHeight()) {
-                        scale = (float) outWidth / (float) toTransform.getWidth();
-                    } else {
-                        scale = (float) outHeight / (float) toTransform.getHeight();
-                    }
-
-                    if (scale < 1f) {
-                        transformed = TransformationUtils.fitCenter(toTransform, pool, outWidth, outHeight);
-                    } else {
-                        transformed = toTransform;
-                    }
-
+                    transformed = TransformationUtils.fitCenter(toTransform, pool, outWidth, outHeight);
                     break;
 
-                case FIT_XY:
-
-                    // if total number of pixels decreases
-                    if (toTransform.getWidth() * toTransform.getHeight() > outWidth * outHeight) {
-
-                        final Bitmap toReuse = pool.get(
-                                outWidth,
-                                outHeight,
-                                safeConfig
-                        );
-                        transformed = toReuse == null ? Bitmap.createBitmap(
-                                outWidth,
-                                outHeight,
-                                safeConfig
-                        ) : toReuse;
-
-                        final Paint paint = new Paint(TransformationUtils.PAINT_FLAGS);
-                        final Canvas canvas = new Canvas(transformed);
-                        canvas.drawBitmap(
-                                toTransform,
-                                null,
-                                new RectF(0, 0, outWidth, outHeight),
-                                paint
-                        );
-
-                    } else {
-                        transformed = toTransform;
-                    }
+                case FIT_XY: {
+
+                    final Bitmap toReuse = pool.get(
+                            outWidth,
+                            outHeight,
+                            safeConfig
+                    );
+                    transformed = toReuse == null ? Bitmap.createBitmap(
+                            outWidth,
+                            outHeight,
+                            safeConfig
+                    ) : toReuse;
+
+                    final Paint paint = new Paint(TransformationUtils.PAINT_FLAGS);
+                    final Canvas canvas = new Canvas(transformed);
+                    canvas.drawBitmap(
+                            toTransform,
+                            null,
+                            new RectF(0, 0, outWidth, outHeight),
+                            paint
+                    );
 
                     break;
 
+                }
+
                 default:
                     throw new IllegalArgumentException("scaleMode = " + scaleMode);
 
@@ -527,4 +995,137 @@ public class GlideImageLoader implements ImageLoader {
 
     }
 
+    /**
+     * Blurs a bitmap with {@link StackBlur}. The bitmap is expected to be sampled down already,
+     * so it's blurred at its own size.
+     */
+    private static class StackBlurTransformation extends BitmapTransformation {
+
+        static final String ID = StackBlurTransformation.class.getName();
+
+        private final int radius;
+
+        StackBlurTransformation(Context context, int radius) {
+            super(context);
+            this.radius = radius;
+        }
+
+        @Override
+        protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
+
+            if (CancellableBitmapDecoder.isCancelled()) {
+                throw new CancellationException("Cancelled before transformation");
+            }
+
+            if (radius < 1) {
+                return toTransform;
+            }
+
+            int width = toTransform.getWidth();
+            int height = toTransform.getHeight();
+
+            Bitmap transformed;
+            if (toTransform.isMutable() && toTransform.getConfig() == Bitmap.Config.ARGB_8888) {
+                transformed = toTransform;
+            } else {
+                transformed = pool.get(width, height, Bitmap.Config.ARGB_8888);
+                if (transformed == null) {
+                    transformed = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                }
+            }
+
+            StackBlur stackBlur = getStackBlur();
+            int[] pixels = stackBlur.obtainBuffer(width * height);
+
+            try {
+                toTransform.getPixels(pixels, 0, width, 0, 0, width, height);
+                stackBlur.blur(pixels, width, height, radius);
+                transformed.setPixels(pixels, 0, width, 0, 0, width, height);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (transformed != toTransform && !pool.put(transformed)) {
+                    transformed.recycle();
+                }
+                throw new CancellationException("Cancelled while blurring");
+            } finally {
+                stackBlur.releaseBuffer(pixels);
+            }
+
+            return transformed;
+
+        }
+
+        @Override
+        public String getId() {
+            return ID + "(" + radius + ")";
+        }
+
+    }
+
+    /**
+     * Cuts a circle out of a bitmap, so that {@link CircleFadingDaliDrawable} draws it as is.
+     * The result is a square as wide as the lesser dimension of the target, with transparent
+     * corners. The image is placed in it the same way the drawable would place it in the target.
+     */
+    private static class CircleMaskTransformation extends BitmapTransformation {
+
+        static final String ID = CircleMaskTransformation.class.getName();
+
+        private final ScaleMode scaleMode;
+
+        CircleMaskTransformation(Context context, ScaleMode scaleMode) {
+            super(context);
+            this.scaleMode = scaleMode;
+        }
+
+        @Override
+        protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
+
+            if (CancellableBitmapDecoder.isCancelled()) {
+                throw new CancellationException("Cancelled before transformation");
+            }
+
+            int width = toTransform.getWidth();
+            int height = toTransform.getHeight();
+
+            // a small image is not upscaled, the target is shrunk instead
+            Scaling scaling = new Scaling().set(scaleMode, width, height, outWidth, outHeight);
+            float scale = Math.min(1f, Math.max(scaling.scaleX, scaling.scaleY));
+            float targetWidth = outWidth / scale;
+            float targetHeight = outHeight / scale;
+            scaling.set(scaleMode, width, height, targetWidth, targetHeight);
+
+            int size = Math.max(1, Math.round(Math.min(targetWidth, targetHeight)));
+
+            // the pool erases bitmaps, so the corners are transparent
+            Bitmap transformed = pool.get(size, size, Bitmap.Config.ARGB_8888);
+            if (transformed == null) {
+                transformed = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            }
+
+            BitmapShader shader = new BitmapShader(toTransform, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            Matrix matrix = new Matrix();
+            matrix.setTranslate(scaling.translateX, scaling.translateY);
+            matrix.postScale(scaling.scaleX, scaling.scaleY);
+            matrix.postTranslate((size - targetWidth) / 2f, (size - targetHeight) / 2f);
+            shader.setLocalMatrix(matrix);
+
+            Paint paint = new Paint(TransformationUtils.PAINT_FLAGS | Paint.ANTI_ALIAS_FLAG);
+            paint.setShader(shader);
+
+            Canvas canvas = new Canvas(transformed);
+            canvas.drawCircle(size / 2f, size / 2f, size / 2f, paint);
+            canvas.setBitmap(null);
+
+            return transformed;
+
+        }
+
+        @Override
+        public String getId() {
+            return ID + "(" + scaleMode.name() + ")";
+        }
+
+    }
+
 }
@@ -17,27 +17,80 @@
 package io.reist.dali.glide;
 
 import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
-import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
+import com.bumptech.glide.load.engine.executor.FifoPriorityThreadPoolExecutor;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.module.GlideModule;
 
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.TimeUnit;
 
+import io.reist.dali.DaliLoader;
+import io.reist.dali.Pipeline;
 import okhttp3.OkHttpClient;
 
 /**
- * The module configures timeouts for {@link GlideImageLoader}.
+ * The module configures timeouts for {@link GlideImageLoader}. If there's a {@link Pipeline},
+ * Glide's source pool becomes its fetch pool. Glide takes its pools only once, when it's
+ * initialized, so a pipeline which is set later gets the fetch pool Glide already has, if any.
  */
 public class GlideImageLoaderModule implements GlideModule {
 
+    private static final String TAG = GlideImageLoaderModule.class.getName();
+
     private static final int TIMEOUT = 1000;
 
+    private static volatile boolean initialized;
+
+    /**
+     * Glide's source pool if Glide has been initialized with a pipeline
+     */
+    private static volatile FifoPriorityThreadPoolExecutor fetchExecutor;
+
+    private static WeakReference<Pipeline> warnedPipeline = new WeakReference<>(null);
+
     @Override
-    public void applyOptions(Context context, GlideBuilder builder) {}
+    public void applyOptions(Context context, GlideBuilder builder) {
+        Pipeline pipeline = DaliLoader.getInstance().getPipeline();
+        if (pipeline != null) {
+            // jobs fetch on this pool and wait for the decode and transform stages
+            FifoPriorityThreadPoolExecutor fetchExecutor = new FifoPriorityThreadPoolExecutor(pipeline.getFetchThreads());
+            builder.setResizeService(fetchExecutor);
+            pipeline.setFetchExecutor(fetchExecutor);
+            GlideImageLoaderModule.fetchExecutor = fetchExecutor;
+        }
+        initialized = true;
+    }
+
+    /**
+     * Gives a pipeline which has been set after Glide's initialization the fetch pool which
+     * Glide uses
+     */
+    static void attachFetchExecutor(@NonNull Pipeline pipeline) {
+
+        if (!initialized || pipeline.getFetchExecutor() != null) {
+            return;
+        }
+
+        FifoPriorityThreadPoolExecutor fetchExecutor = GlideImageLoaderModule.fetchExecutor;
+        if (fetchExecutor != null) {
+            pipeline.setFetchExecutor(fetchExecutor);
+            return;
+        }
+
+        synchronized (GlideImageLoaderModule.class) {
+            if (warnedPipeline.get() != pipeline) {
+                warnedPipeline = new WeakReference<>(pipeline);
+                Log.w(TAG, "Glide has been initialized without a pipeline, it fetches on its own pool");
+            }
+        }
+
+    }
 
     @Override
     public void registerComponents(Context context, Glide glide) {
@@ -50,7 +103,7 @@ public class GlideImageLoaderModule implements GlideModule {
         glide.register(
                 GlideUrl.class,
                 InputStream.class,
-                new OkHttpUrlLoader.Factory(clientBuilder.build())
+                new ResumableUrlLoader.Factory(clientBuilder.build())
         );
 
     }
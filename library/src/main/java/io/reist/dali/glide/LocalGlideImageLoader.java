@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.support.annotation.NonNull;
+
+import com.bumptech.glide.BitmapTypeRequest;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+
+import io.reist.dali.ImageRequest;
+
+/**
+ * A loader for file://, content://, android.resource:// and data: urls. A local source is
+ * cheap to read again, so decoded images are not written to the disk cache. Base64 encoded data
+ * urls are decoded by {@link DataUrlLoader}.
+ *
+ * Register it with {@link io.reist.dali.Dali#setImageLoaderClass(String, Class)} for each scheme.
+ */
+public class LocalGlideImageLoader extends GlideImageLoader {
+
+    private static final DataUrlLoader DATA_URL_LOADER = new DataUrlLoader();
+
+    @NonNull
+    @Override
+    protected BitmapTypeRequest load(@NonNull RequestManager requestManager, @NonNull ImageRequest request) {
+
+        if (DataUrlLoader.isDataUrl(request.url)) {
+            return requestManager.using(DATA_URL_LOADER).load(request.url).asBitmap();
+        } else {
+            // Glide reports unsupported urls as failures
+            return super.load(requestManager, request);
+        }
+
+    }
+
+    @NonNull
+    @Override
+    protected DiskCacheStrategy getDiskCacheStrategy(@NonNull ImageRequest request) {
+        return DiskCacheStrategy.NONE;
+    }
+
+}
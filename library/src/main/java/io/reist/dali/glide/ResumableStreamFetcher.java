@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reist.dali.CancellationPolicy;
+import io.reist.dali.DownloadCache;
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Downloads a resource into {@link DownloadCache} and streams it from the disk. If a previous
+ * download of the same url was interrupted, only the missing tail is requested with
+ * a Range header. The If-Range header makes the server send the whole resource if it has
+ * changed since the partial body was stored. If the server rejects the range or answers with
+ * another one, the partial body is dropped and the resource is requested once more without
+ * a range.
+ *
+ * When the fetcher is cancelled, {@link CancellationPolicy} decides whether the download is
+ * aborted or finished into {@link DownloadCache}. A finished body is kept on the disk and
+ * served locally to the next fetcher of the same url. An aborted download cancels its
+ * {@link Call}, so a blocked read fails right away instead of waiting for more bytes.
+ *
+ * Glide interrupts the thread of a cancelled job, and an interrupted thread can't read from
+ * the network. So a download which is to be finished is handed over to a thread of its own,
+ * and {@link #loadData(Priority)} fails right away.
+ */
+public class ResumableStreamFetcher implements DataFetcher<InputStream> {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final int FINISHER_THREADS = 2;
+
+    /**
+     * Finishes downloads of cancelled jobs
+     */
+    private static final ExecutorService finisher = createFinisher();
+
+    private final Call.Factory client;
+    private final DownloadCache cache;
+    private final String url;
+    private final Map<String, String> headers;
+    private final String id;
+    private final CancellationPolicy cancellationPolicy;
+
+    private volatile String key;
+    private InputStream stream;
+    private ResponseBody responseBody;
+
+    private volatile Call call;
+
+    private volatile long received;
+    private volatile long length = -1;
+
+    private volatile boolean cancelled;
+    private boolean finishing;
+
+    public ResumableStreamFetcher(
+            Call.Factory client,
+            DownloadCache cache,
+            String url,
+            Map<String, String> headers,
+            String id,
+            CancellationPolicy cancellationPolicy
+    ) {
+        this.client = client;
+        this.cache = cache;
+        this.url = url;
+        this.headers = headers;
+        this.id = id;
+        this.cancellationPolicy = cancellationPolicy;
+    }
+
+    @Override
+    public InputStream loadData(Priority priority) throws Exception {
+
+        String key = cache.key(url);
+
+        if (!cache.tryLock(key)) {
+            // the same resource is being downloaded by another fetcher, don't touch its files
+            Response response = execute(newRequestBuilder());
+            responseBody = response.body();
+            if (!response.isSuccessful()) {
+                throw new IOException("Request failed with code: " + response.code());
+            }
+            stream = responseBody.byteStream();
+            return stream;
+        }
+
+        this.key = key;
+
+        cache.ensureDir();
+        cache.trim();
+
+        File bodyFile = cache.getBodyFile(key);
+        DownloadCache.Meta meta = cache.readMeta(key);
+
+        long offset = meta == null ? 0 : bodyFile.length();
+        if (meta != null && meta.length >= 0 && offset == meta.length) {
+            stream = new FileInputStream(bodyFile);
+            return stream;
+        }
+
+        Request.Builder requestBuilder = newRequestBuilder();
+        if (offset > 0) {
+            requestBuilder
+                    .header("Range", "bytes=" + offset + "-")
+                    .header("If-Range", meta.etag);
+        }
+
+        Response response = execute(requestBuilder);
+        responseBody = response.body();
+
+        int code = response.code();
+        if (offset > 0 && (code == 416 || (code == 206 && getRangeStart(response) != offset))) {
+
+            // the server can't continue the partial body, so it's downloaded from scratch once
+            DownloadCache.closeQuietly(responseBody);
+            responseBody = null;
+            cache.remove(key);
+            offset = 0;
+
+            response = execute(newRequestBuilder());
+            responseBody = response.body();
+            code = response.code();
+
+        }
+
+        if (code == 206 && offset > 0 && getRangeStart(response) == offset) {
+            download(response, bodyFile, offset, true);
+        } else if (code == 200) {
+            download(response, bodyFile, 0, false);
+        } else {
+            cache.remove(key);
+            throw new IOException("Request failed with code: " + code);
+        }
+
+        stream = new FileInputStream(bodyFile);
+        return stream;
+
+    }
+
+    private Response execute(Request.Builder requestBuilder) throws IOException {
+        Call call = client.newCall(requestBuilder.build());
+        this.call = call;
+        if (shouldAbort()) {
+            // cancelled before the call could be cancelled
+            throw new IOException("Canceled");
+        }
+        return call.execute();
+    }
+
+    /**
+     * @return true if the fetcher has been cancelled and the download mustn't be finished
+     */
+    private synchronized boolean shouldAbort() {
+
+        if (!cancelled || finishing) {
+            return false;
+        }
+
+        // only a download into the cache is worth finishing
+        if (key != null && cancellationPolicy.shouldFinish(received, length)) {
+            finishing = true;
+            return false;
+        }
+
+        return true;
+
+    }
+
+    private void download(Response response, File bodyFile, long offset, boolean append) throws IOException {
+
+        String etag = response.header("ETag");
+        long contentLength = responseBody.contentLength();
+        long length = contentLength < 0 ? -1 : offset + contentLength;
+
+        this.received = offset;
+        this.length = length;
+
+        if (etag != null && !etag.startsWith("W/")) {
+            cache.writeMeta(key, new DownloadCache.Meta(etag, length));
+        } else {
+            // a weak or missing validator can't be used with If-Range, so the body is not resumable
+            cache.remove(key);
+        }
+
+        InputStream in = responseBody.byteStream();
+        FileOutputStream out = new FileOutputStream(bodyFile, append);
+
+        boolean handedOver = false;
+
+        try {
+
+            copy(in, out);
+
+        } catch (InterruptedIOException e) {
+
+            // the job has been cancelled, the interrupt may come before or instead of cancel()
+            cancelled = true;
+
+            if (shouldAbort()) {
+                removeIfNotResumable(etag);
+                throw e;
+            }
+
+            handOver(in, out, bodyFile, etag, length);
+            handedOver = true;
+
+            // Okio clears the interrupt when it throws, the job's thread must stay interrupted
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Cancelled, the download is finished in the background");
+
+        } catch (IOException e) {
+
+            removeIfNotResumable(etag);
+            throw e;
+
+        } finally {
+            if (!handedOver) {
+                DownloadCache.closeQuietly(out);
+                DownloadCache.closeQuietly(responseBody);
+                responseBody = null;
+            }
+        }
+
+        complete(cache, key, bodyFile, etag, length);
+
+    }
+
+    /**
+     * @throws InterruptedIOException   if the thread has been interrupted
+     */
+    private void copy(InputStream in, FileOutputStream out) throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while (true) {
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted");
+            }
+
+            read = in.read(buffer);
+            if (read == -1) {
+                break;
+            }
+
+            if (shouldAbort()) {
+                throw new IOException("Canceled");
+            }
+
+            out.write(buffer, 0, read);
+            received += read;
+
+        }
+
+    }
+
+    /**
+     * Passes the rest of the download to {@link #finisher}. The finisher owns the response and
+     * the lock of the key from now on.
+     */
+    private void handOver(
+            final InputStream in,
+            final FileOutputStream out,
+            final File bodyFile,
+            final String etag,
+            final long length
+    ) {
+
+        final DownloadCache cache = this.cache;
+        final String key = this.key;
+        final ResponseBody responseBody = this.responseBody;
+
+        this.key = null;
+        this.responseBody = null;
+
+        finisher.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+
+                    DownloadCache.closeQuietly(out);
+                    complete(cache, key, bodyFile, etag, length);
+
+                } catch (IOException e) {
+                    if (etag == null || etag.startsWith("W/")) {
+                        cache.remove(key);
+                    }
+                } finally {
+                    DownloadCache.closeQuietly(out);
+                    DownloadCache.closeQuietly(responseBody);
+                    cache.unlock(key);
+                }
+
+            }
+
+        });
+
+    }
+
+    private void removeIfNotResumable(String etag) {
+        if (etag == null || etag.startsWith("W/")) {
+            cache.remove(key);
+        }
+    }
+
+    private static void complete(
+            DownloadCache cache,
+            String key,
+            File bodyFile,
+            String etag,
+            long length
+    ) throws IOException {
+
+        if (length >= 0 && bodyFile.length() != length) {
+            cache.remove(key);
+            throw new IOException("Unexpected body length: " + bodyFile.length() + " != " + length);
+        }
+
+        // mark the body as complete
+        cache.writeMeta(key, new DownloadCache.Meta(etag == null ? "" : etag, bodyFile.length()));
+
+    }
+
+    private static ExecutorService createFinisher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                FINISHER_THREADS,
+                FINISHER_THREADS,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "dali-finisher-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private Request.Builder newRequestBuilder() {
+        Request.Builder requestBuilder = new Request.Builder().url(url);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            requestBuilder.addHeader(header.getKey(), header.getValue());
+        }
+        return requestBuilder;
+    }
+
+    /**
+     * @return the first byte position of a Content-Range header, e.g. 100 for
+     *         "bytes 100-199/200", or -1 if the header is missing or malformed
+     */
+    private static long getRangeStart(Response response) {
+
+        String contentRange = response.header("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+    }
+
+    @Override
+    public void cleanup() {
+
+        DownloadCache.closeQuietly(stream);
+        DownloadCache.closeQuietly(responseBody);
+
+        if (key != null) {
+            // the complete body has been handed over to the decoder, Glide caches it from now on;
+            // a cancelled request isn't decoded so its body is kept for the next request
+            if (stream instanceof FileInputStream && !cancelled) {
+                cache.remove(key);
+            }
+            cache.unlock(key);
+            key = null;
+        }
+
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Glide calls this when the last request waiting for the resource has been cleared
+     */
+    @Override
+    public void cancel() {
+        cancelled = true;
+        Call call = this.call;
+        if (call != null && shouldAbort()) {
+            call.cancel();
+        }
+    }
+
+}
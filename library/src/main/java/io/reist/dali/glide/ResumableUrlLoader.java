@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.content.Context;
+
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GenericLoaderFactory;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.StreamModelLoader;
+
+import java.io.File;
+import java.io.InputStream;
+
+import io.reist.dali.DaliLoader;
+import io.reist.dali.DownloadCache;
+import okhttp3.Call;
+
+/**
+ * A replacement for OkHttpUrlLoader which keeps interrupted downloads on the disk and resumes
+ * them later. See {@link ResumableStreamFetcher}.
+ */
+public class ResumableUrlLoader implements StreamModelLoader<GlideUrl> {
+
+    private final Call.Factory client;
+    private final DownloadCache cache;
+
+    public ResumableUrlLoader(Call.Factory client, DownloadCache cache) {
+        this.client = client;
+        this.cache = cache;
+    }
+
+    @Override
+    public DataFetcher<InputStream> getResourceFetcher(GlideUrl model, int width, int height) {
+        return new ResumableStreamFetcher(
+                client,
+                cache,
+                model.toStringUrl(),
+                model.getHeaders(),
+                model.getCacheKey(),
+                DaliLoader.getInstance().getCancellationPolicy()
+        );
+    }
+
+    public static class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
+
+        private static final String DIR_NAME = "dali_partial";
+        private static final long MAX_SIZE = 20 * 1024 * 1024;
+
+        private final Call.Factory client;
+
+        public Factory(Call.Factory client) {
+            this.client = client;
+        }
+
+        @Override
+        public ModelLoader<GlideUrl, InputStream> build(Context context, GenericLoaderFactory factories) {
+            return new ResumableUrlLoader(
+                    client,
+                    new DownloadCache(new File(context.getCacheDir(), DIR_NAME), MAX_SIZE)
+            );
+        }
+
+        @Override
+        public void teardown() {}
+
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+
+import io.reist.dali.Stage;
+
+/**
+ * Decodes on the decode {@link Stage} of {@link io.reist.dali.Pipeline} while the job's thread,
+ * one of Glide's fetch threads, waits. If the job is cancelled, the thread is interrupted and
+ * the interrupt is passed on to the decode.
+ */
+class StagedBitmapDecoder implements ResourceDecoder<InputStream, Bitmap> {
+
+    private final Stage stage;
+    private final ResourceDecoder<InputStream, Bitmap> decoder;
+
+    StagedBitmapDecoder(Stage stage, ResourceDecoder<InputStream, Bitmap> decoder) {
+        this.stage = stage;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public Resource<Bitmap> decode(final InputStream source, final int width, final int height) throws IOException {
+        try {
+            return stage.call(new Callable<Resource<Bitmap>>() {
+
+                @Override
+                public Resource<Bitmap> call() throws Exception {
+                    return decoder.decode(source, width, height);
+                }
+
+            });
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Cancelled while decoding");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String getId() {
+        return decoder.getId();
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+import io.reist.dali.Stage;
+
+/**
+ * Runs a transformation on the transform {@link Stage} of {@link io.reist.dali.Pipeline}
+ */
+class StagedTransformation implements Transformation<Bitmap> {
+
+    private final Stage stage;
+    private final Transformation<Bitmap> transformation;
+
+    StagedTransformation(Stage stage, Transformation<Bitmap> transformation) {
+        this.stage = stage;
+        this.transformation = transformation;
+    }
+
+    @Override
+    public Resource<Bitmap> transform(final Resource<Bitmap> resource, final int outWidth, final int outHeight) {
+        try {
+            return stage.call(new Callable<Resource<Bitmap>>() {
+
+                @Override
+                public Resource<Bitmap> call() throws Exception {
+                    return transformation.transform(resource, outWidth, outHeight);
+                }
+
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Cancelled while transforming");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String getId() {
+        return transformation.getId();
+    }
+
+}
@@ -0,0 +1,621 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.local;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+import android.view.View;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reist.dali.BlockingImageLoader;
+import io.reist.dali.DaliCallback;
+import io.reist.dali.DaliErrorCallback;
+import io.reist.dali.DaliLoader;
+import io.reist.dali.ImageRequest;
+import io.reist.dali.drawables.CircleFadingDaliDrawable;
+import io.reist.dali.drawables.DaliDrawable;
+import io.reist.dali.drawables.FadingDaliDrawable;
+
+import static io.reist.dali.DaliUtils.getApplicationContext;
+import static io.reist.dali.DaliUtils.getPlaceholder;
+import static io.reist.dali.DaliUtils.setBackground;
+import static io.reist.dali.DaliUtils.setDrawable;
+import static io.reist.dali.DaliUtils.setPlaceholder;
+import static io.reist.dali.DaliUtils.setUpgradeListener;
+
+/**
+ * A loader for local files, e.g. a gallery of photos taken by the camera. Files are decoded
+ * right from their descriptors on a pool of its own, so there are no stream copies and no disk
+ * cache. Image dimensions and EXIF orientations of JPEG files are remembered to skip reading
+ * bounds the next time a file is loaded. Bitmaps are decoded into bitmaps from Glide's pool.
+ * Bitmaps which have been shown are left to the garbage collector, since drawables may share
+ * them with copies made from their constant states.
+ *
+ * Register it for the "file" scheme with
+ * {@link io.reist.dali.Dali#setImageLoaderClass(String, Class)}. Blur and regions are not
+ * supported.
+ */
+public class LocalFileImageLoader implements BlockingImageLoader {
+
+    private static final int THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final int DIMENSIONS_CACHE_SIZE = 512;
+
+    private static final String JPEG = "image/jpeg";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+
+            }, "dali-local-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final LruCache<String, Dimensions> dimensionsCache = new LruCache<>(DIMENSIONS_CACHE_SIZE);
+
+    /**
+     * Tasks reference their targets weakly, otherwise they would keep their own keys
+     */
+    private final Map<Object, Task> taskMap = new WeakHashMap<>();
+
+    private final AtomicInteger boundsReads = new AtomicInteger();
+
+    @Override
+    public void load(@NonNull ImageRequest request, @NonNull View view, boolean background) {
+
+        Context appContext = getApplicationContext(request);
+
+        if (appContext == null) {
+            return;
+        }
+
+        ImageRequest original = request;
+
+        if (request.transformer != null) {
+            request = request.transformer.transform(request);
+        }
+
+        BitmapPool bitmapPool = Glide.get(appContext).getBitmapPool();
+
+        cancel(view);
+        setPlaceholder(request, view, background, null);
+
+        int targetWidth = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+        int targetHeight = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+
+        Task task = new ViewTask(request, original, bitmapPool, view, background, targetWidth, targetHeight);
+        taskMap.put(view, task);
+        executor.execute(task);
+
+    }
+
+    @Override
+    public void load(@NonNull ImageRequest request, @NonNull DaliCallback callback) {
+
+        Context appContext = getApplicationContext(request);
+
+        if (appContext == null) {
+            return;
+        }
+
+        cancel(callback);
+
+        // the bitmap belongs to the callback, so nothing is taken from the pool
+        Task task = new CallbackTask(request, callback);
+        taskMap.put(callback, task);
+        executor.execute(task);
+
+    }
+
+    @NonNull
+    @Override
+    public Bitmap get(@NonNull ImageRequest request) throws InterruptedException, ExecutionException {
+        try {
+            return decode(request, null);
+        } catch (IOException e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    @Override
+    public void cancel(@NonNull Object target) {
+        Task task = taskMap.remove(target);
+        if (task != null) {
+            task.cancelled = true;
+        }
+    }
+
+    @Override
+    public void cancelAll() {
+        for (Task task : taskMap.values()) {
+            task.cancelled = true;
+        }
+        taskMap.clear();
+    }
+
+    /**
+     * @return the number of times bounds have been read from files rather than found in the
+     *         dimensions cache
+     */
+    int getBoundsReads() {
+        return boundsReads.get();
+    }
+
+    @NonNull
+    private Bitmap decode(@NonNull ImageRequest request, @Nullable BitmapPool bitmapPool) throws IOException {
+
+        String path = getPath(request.url);
+        File file = new File(path);
+
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+
+            FileDescriptor fd = in.getFD();
+
+            Dimensions dimensions = getDimensions(path, file, in);
+
+            // the target is given for the oriented image
+            boolean transposed = isTransposed(dimensions.orientation);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = getSampleSize(
+                    dimensions.width,
+                    dimensions.height,
+                    transposed ? request.getTargetHeight() : request.getTargetWidth(),
+                    transposed ? request.getTargetWidth() : request.getTargetHeight()
+            );
+            options.inPreferredConfig = request.config;
+            options.inMutable = true;
+
+            if (bitmapPool != null && canReuse(options.inSampleSize)) {
+                options.inBitmap = bitmapPool.get(
+                        divideRoundingUp(dimensions.width, options.inSampleSize),
+                        divideRoundingUp(dimensions.height, options.inSampleSize),
+                        request.config
+                );
+            }
+
+            Bitmap bitmap;
+            try {
+                bitmap = BitmapFactory.decodeFileDescriptor(fd, null, options);
+            } catch (IllegalArgumentException e) {
+                if (options.inBitmap == null) {
+                    throw e;
+                }
+                // the pooled bitmap doesn't fit
+                bitmapPool.put(options.inBitmap);
+                options.inBitmap = null;
+                in.getChannel().position(0);
+                bitmap = BitmapFactory.decodeFileDescriptor(fd, null, options);
+            }
+
+            if (options.inBitmap != null && options.inBitmap != bitmap) {
+                bitmapPool.put(options.inBitmap);
+            }
+
+            if (bitmap == null) {
+                throw new IOException("Unable to decode " + path);
+            }
+
+            return orient(bitmap, dimensions.orientation, bitmapPool);
+
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {}
+        }
+
+    }
+
+    /**
+     * @return false if the bitmap has the size of its file, true if it's sampled down or the
+     *          size of the file isn't known
+     */
+    private boolean isDownsampled(@NonNull String url, @NonNull Bitmap bitmap) {
+
+        Dimensions dimensions = dimensionsCache.get(getPath(url));
+
+        if (dimensions == null) {
+            return true;
+        }
+
+        // the bitmap may be rotated, so only the greater sides are compared
+        return Math.max(bitmap.getWidth(), bitmap.getHeight()) < Math.max(dimensions.width, dimensions.height);
+
+    }
+
+    /**
+     * Reads the bounds only if they aren't known yet or the file has changed
+     */
+    @NonNull
+    private Dimensions getDimensions(String path, File file, FileInputStream in) throws IOException {
+
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        Dimensions dimensions = dimensionsCache.get(path);
+        if (dimensions != null && dimensions.lastModified == lastModified && dimensions.length == length) {
+            return dimensions;
+        }
+
+        boundsReads.incrementAndGet();
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFileDescriptor(in.getFD(), null, options);
+        in.getChannel().position(0);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to read bounds of " + path);
+        }
+
+        int orientation = ExifInterface.ORIENTATION_NORMAL;
+        if (JPEG.equals(options.outMimeType)) {
+            orientation = new ExifInterface(path).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL
+            );
+        }
+
+        dimensions = new Dimensions(options.outWidth, options.outHeight, orientation, lastModified, length);
+        dimensionsCache.put(path, dimensions);
+
+        return dimensions;
+
+    }
+
+    private static boolean isTransposed(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_TRANSPOSE ||
+                orientation == ExifInterface.ORIENTATION_ROTATE_90 ||
+                orientation == ExifInterface.ORIENTATION_TRANSVERSE ||
+                orientation == ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * @return the bitmap turned as the EXIF orientation says, the decoded bitmap goes back to
+     *         the pool if it's replaced
+     */
+    @NonNull
+    private static Bitmap orient(@NonNull Bitmap bitmap, int orientation, @Nullable BitmapPool bitmapPool) {
+
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setRotate(180);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return bitmap;
+        }
+
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+
+        if (oriented != bitmap) {
+            if (bitmapPool != null) {
+                bitmapPool.put(bitmap);
+            } else {
+                bitmap.recycle();
+            }
+        }
+
+        return oriented;
+
+    }
+
+    @NonNull
+    static String getPath(String url) {
+        if (url.startsWith("/")) {
+            return url;
+        }
+        String path = Uri.parse(url).getPath();
+        if (path == null) {
+            throw new IllegalArgumentException("Not a file: " + url);
+        }
+        return path;
+    }
+
+    /**
+     * @return the greatest power of two which keeps the image not smaller than the target
+     */
+    static int getSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        return Math.max(1, Integer.highestOneBit(Math.min(width / targetWidth, height / targetHeight)));
+    }
+
+    /**
+     * Before KitKat, only bitmaps of the same size can be reused, and only without sampling
+     */
+    private static boolean canReuse(int sampleSize) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT || sampleSize == 1;
+    }
+
+    private static int divideRoundingUp(int size, int divisor) {
+        return (size + divisor - 1) / divisor;
+    }
+
+    private static class Dimensions {
+
+        final int width;
+        final int height;
+        final int orientation;
+        final long lastModified;
+        final long length;
+
+        Dimensions(int width, int height, int orientation, long lastModified, long length) {
+            this.width = width;
+            this.height = height;
+            this.orientation = orientation;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+    }
+
+    private abstract class Task implements Runnable {
+
+        final ImageRequest request;
+
+        volatile boolean cancelled;
+
+        Task(ImageRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+
+            if (cancelled) {
+                return;
+            }
+
+            final Bitmap bitmap;
+            Exception exception = null;
+            Bitmap decoded = null;
+            try {
+                decoded = decode(request, getBitmapPool());
+            } catch (IOException e) {
+                exception = e;
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+            bitmap = decoded;
+
+            final Exception finalException = exception;
+            mainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        onCancelled(bitmap);
+                        return;
+                    }
+                    taskMap.values().remove(Task.this);
+                    if (bitmap == null) {
+                        onFailed(finalException);
+                    } else {
+                        onLoaded(bitmap);
+                    }
+                }
+
+            });
+
+        }
+
+        @Nullable
+        abstract BitmapPool getBitmapPool();
+
+        abstract void onLoaded(@NonNull Bitmap bitmap);
+
+        abstract void onFailed(@Nullable Exception e);
+
+        abstract void onCancelled(@Nullable Bitmap bitmap);
+
+    }
+
+    private class ViewTask extends Task {
+
+        private final ImageRequest original;
+        private final BitmapPool bitmapPool;
+        private final WeakReference<View> view;
+        private final boolean background;
+        private final int targetWidth;
+        private final int targetHeight;
+
+        ViewTask(
+                ImageRequest request,
+                ImageRequest original,
+                BitmapPool bitmapPool,
+                View view,
+                boolean background,
+                int targetWidth,
+                int targetHeight
+        ) {
+            super(request);
+            this.original = original;
+            this.bitmapPool = bitmapPool;
+            this.view = new WeakReference<>(view);
+            this.background = background;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+        }
+
+        @Override
+        BitmapPool getBitmapPool() {
+            return bitmapPool;
+        }
+
+        @Override
+        void onLoaded(@NonNull Bitmap bitmap) {
+
+            View view = this.view.get();
+
+            if (view == null) {
+                // nobody has seen the bitmap
+                bitmapPool.put(bitmap);
+                return;
+            }
+
+            Drawable placeholder = getPlaceholder(view, background);
+
+            DaliDrawable drawable;
+            if (request.inCircle) {
+                drawable = new CircleFadingDaliDrawable(
+                        bitmap,
+                        request.scaleMode,
+                        targetWidth,
+                        targetHeight,
+                        placeholder,
+                        null,
+                        false
+                );
+            } else {
+                drawable = new FadingDaliDrawable(
+                        bitmap,
+                        request.scaleMode,
+                        targetWidth,
+                        targetHeight,
+                        placeholder,
+                        null,
+                        false
+                );
+            }
+
+            DaliLoader.getInstance().getMemoryTracker().track(drawable, request.attachTarget, request.url);
+            drawable.setDownsampled(isDownsampled(request.url, bitmap));
+            setUpgradeListener(drawable, original, view, background);
+
+            if (background) {
+                setBackground(drawable, view);
+            } else {
+                setDrawable(drawable, view);
+            }
+
+        }
+
+        @Override
+        void onFailed(@Nullable Exception e) {}
+
+        @Override
+        void onCancelled(@Nullable Bitmap bitmap) {
+            if (bitmap != null) {
+                bitmapPool.put(bitmap);
+            }
+        }
+
+    }
+
+    private class CallbackTask extends Task {
+
+        private final WeakReference<DaliCallback> callback;
+
+        CallbackTask(ImageRequest request, DaliCallback callback) {
+            super(request);
+            this.callback = new WeakReference<>(callback);
+        }
+
+        @Override
+        BitmapPool getBitmapPool() {
+            return null;
+        }
+
+        @Override
+        void onLoaded(@NonNull Bitmap bitmap) {
+            DaliCallback callback = this.callback.get();
+            if (callback != null) {
+                callback.onImageLoaded(bitmap);
+            }
+        }
+
+        @Override
+        void onFailed(@Nullable Exception e) {
+            DaliCallback callback = this.callback.get();
+            if (callback instanceof DaliErrorCallback) {
+                ((DaliErrorCallback) callback).onImageFailed(e);
+            }
+        }
+
+        @Override
+        void onCancelled(@Nullable Bitmap bitmap) {}
+
+    }
+
+}
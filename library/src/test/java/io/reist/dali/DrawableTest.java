@@ -17,9 +17,13 @@
 package io.reist.dali;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.support.annotation.NonNull;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -60,6 +64,138 @@ public class DrawableTest {
 
     }
 
+    @Test
+    public void regionDaliDrawable() {
+
+        Bitmap atlas = Bitmap.createBitmap(4, 2, Bitmap.Config.ARGB_8888);
+
+        DaliDrawable daliDrawable = new DaliDrawable(
+                atlas,
+                new Rect(2, 0, 4, 2),
+                ScaleMode.CENTER_INSIDE,
+                1,
+                1
+        );
+        assertDrawable(daliDrawable);
+        Assert.assertEquals(atlas.getByteCount() / 2, daliDrawable.getByteCount());
+
+        DaliDrawable outside = new DaliDrawable(
+                atlas,
+                new Rect(4, 0, 6, 2),
+                ScaleMode.CENTER_INSIDE,
+                1,
+                1
+        );
+        Assert.assertFalse(outside.hasBitmap());
+        Assert.assertEquals(0, outside.getByteCount());
+
+    }
+
+    @Test
+    public void constantState() {
+
+        CircleFadingDaliDrawable daliDrawable = new CircleFadingDaliDrawable(
+                Bitmap.createBitmap(2, 2, Bitmap.Config.ARGB_8888),
+                ScaleMode.CENTER_INSIDE,
+                1,
+                1,
+                null,
+                null,
+                false
+        );
+        daliDrawable.setAlpha(127);
+
+        Drawable.ConstantState constantState = daliDrawable.getConstantState();
+        Assert.assertNotNull(constantState);
+        Assert.assertSame(constantState, daliDrawable.getConstantState());
+
+        Drawable copy = constantState.newDrawable();
+        Assert.assertTrue(copy instanceof CircleFadingDaliDrawable);
+        Assert.assertNotSame(daliDrawable, copy);
+        Assert.assertEquals(daliDrawable.getByteCount(), ((DaliDrawable) copy).getByteCount());
+        Assert.assertFalse(((CircleFadingDaliDrawable) copy).isFadingIn());
+
+        // alpha is not shared
+        Assert.assertEquals(255, copy.getAlpha());
+        Assert.assertSame(copy, copy.mutate());
+
+    }
+
+    @Test
+    public void resize() {
+
+        DaliDrawable daliDrawable = new DaliDrawable(
+                Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888),
+                ScaleMode.CENTER_INSIDE,
+                4,
+                4
+        );
+
+        final int[] upgrades = new int[1];
+        daliDrawable.setUpgradeListener(new DaliDrawable.UpgradeListener() {
+
+            @Override
+            public void onUpgradeNeeded(@NonNull DaliDrawable drawable) {
+                upgrades[0]++;
+            }
+
+        }, 1.5f);
+
+        daliDrawable.setBounds(0, 0, 5, 5);
+        Assert.assertEquals("Stretched within the factor", 0, upgrades[0]);
+
+        daliDrawable.setBounds(0, 0, 2, 2);
+        Assert.assertEquals("Shrunk", 0, upgrades[0]);
+
+        daliDrawable.setBounds(0, 0, 8, 8);
+        Assert.assertEquals("Stretched beyond the factor", 1, upgrades[0]);
+
+        daliDrawable.setBounds(0, 0, 16, 16);
+        Assert.assertEquals("Upgraded only once", 1, upgrades[0]);
+
+        assertDrawable(daliDrawable);
+
+    }
+
+    @Test
+    public void prebakedCircleFadingDaliDrawable() {
+
+        // a circle cut out of a wide image
+        CircleFadingDaliDrawable daliDrawable = new CircleFadingDaliDrawable(
+                Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888),
+                null,
+                ScaleMode.CENTER_CROP,
+                4,
+                2,
+                null,
+                null,
+                true,
+                true
+        );
+        Assert.assertTrue(daliDrawable.isPrebaked());
+
+        final int[] upgrades = new int[1];
+        daliDrawable.setUpgradeListener(new DaliDrawable.UpgradeListener() {
+
+            @Override
+            public void onUpgradeNeeded(@NonNull DaliDrawable drawable) {
+                upgrades[0]++;
+            }
+
+        }, 1.5f);
+
+        // the circle fits the lesser side, so it's not stretched as a cropped image would be
+        daliDrawable.setBounds(0, 0, 8, 4);
+        Assert.assertEquals(0, upgrades[0]);
+
+        assertDrawable(daliDrawable);
+
+        Drawable.ConstantState constantState = daliDrawable.getConstantState();
+        Assert.assertNotNull(constantState);
+        Assert.assertTrue(((CircleFadingDaliDrawable) constantState.newDrawable()).isPrebaked());
+
+    }
+
     @Test
     public void fadingDaliDrawable() throws InterruptedException {
 
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * An in-process HTTP server which serves generated BMP images, so that tests don't depend on
+ * the internet. An image is requested as /{width}x{height}/{seed}.bmp, the same url always gives
+ * the same image. Every response is delayed by a configurable latency.
+ */
+public class ImageServer {
+
+    private static final int BMP_HEADER_SIZE = 54;
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final AtomicLong servedImages = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+
+    private volatile long latency;
+
+    public ImageServer() {
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return ImageServer.this.dispatch(request);
+            }
+
+        });
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * @param latency   a delay in milliseconds before a response body is sent
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public String getUrl(int width, int height, long seed) {
+        return server.url("/" + width + "x" + height + "/" + seed + ".bmp").toString();
+    }
+
+    /**
+     * @return a url with {@link UrlVariants#WIDTH} and {@link UrlVariants#HEIGHT} placeholders
+     */
+    public String getTemplateUrl(long seed) {
+        // placeholders would be escaped by url()
+        return server.url("/").toString() + UrlVariants.WIDTH + "x" + UrlVariants.HEIGHT + "/" + seed + ".bmp";
+    }
+
+    public long getServedImages() {
+        return servedImages.get();
+    }
+
+    public long getServedBytes() {
+        return servedBytes.get();
+    }
+
+    private MockResponse dispatch(RecordedRequest request) {
+
+        String path = request.getPath();
+
+        int sizeEnd = path.indexOf('/', 1);
+        int seedEnd = path.lastIndexOf('.');
+        if (sizeEnd < 0 || seedEnd < sizeEnd) {
+            return new MockResponse().setResponseCode(404);
+        }
+
+        String[] size = path.substring(1, sizeEnd).split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        long seed = Long.parseLong(path.substring(sizeEnd + 1, seedEnd));
+
+        byte[] bmp = createBmp(width, height, seed);
+
+        servedImages.incrementAndGet();
+        servedBytes.addAndGet(bmp.length);
+
+        return new MockResponse()
+                .setHeader("Content-Type", "image/bmp")
+                .setBody(new Buffer().write(bmp))
+                .setBodyDelay(latency, TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * @return a 24-bit BMP filled with a seeded gradient
+     */
+    public static byte[] createBmp(int width, int height, long seed) {
+
+        int rowSize = (width * 3 + 3) & ~3;
+        int imageSize = rowSize * height;
+        int fileSize = BMP_HEADER_SIZE + imageSize;
+
+        byte[] bmp = new byte[fileSize];
+
+        // file header
+        bmp[0] = 'B';
+        bmp[1] = 'M';
+        putInt(bmp, 2, fileSize);
+        putInt(bmp, 10, BMP_HEADER_SIZE);
+
+        // info header
+        putInt(bmp, 14, 40);
+        putInt(bmp, 18, width);
+        putInt(bmp, 22, height);
+        putShort(bmp, 26, 1);
+        putShort(bmp, 28, 24);
+        putInt(bmp, 34, imageSize);
+
+        Random random = new Random(seed);
+        int r = random.nextInt(256);
+        int g = random.nextInt(256);
+        int b = random.nextInt(256);
+
+        for (int y = 0; y < height; y++) {
+            int offset = BMP_HEADER_SIZE + y * rowSize;
+            for (int x = 0; x < width; x++) {
+                bmp[offset++] = (byte) (b + x);
+                bmp[offset++] = (byte) (g + y);
+                bmp[offset++] = (byte) r;
+            }
+        }
+
+        return bmp;
+
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static void putShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+    }
+
+}
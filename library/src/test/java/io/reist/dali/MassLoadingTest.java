@@ -86,6 +86,51 @@ public abstract class MassLoadingTest {
 
     }
 
+    /**
+     * Scrolls through the data set while paused, like {@link DaliScrollListener} does during
+     * a fling. Only the window where scrolling stops is expected to be loaded.
+     */
+    @Test
+    public void performFling() {
+
+        TestActivity testActivity = Robolectric.setupActivity(TestActivity.class);
+        testActivity.setTest(this);
+
+        final ViewRecycler<TestImageView> finalRecycler = testActivity.recycler;
+
+        Dali.pause();
+
+        try {
+
+            for (int i = 0; i < NUM_OF_SCROLL_EVENTS; i++) {
+                finalRecycler.setPosition(i * WINDOW_HEIGHT);
+                finalRecycler.render();
+            }
+
+            Assert.assertEquals("Loaded while paused", 0, testActivity.getTotal());
+
+        } finally {
+            Dali.resume();
+        }
+
+        waitForResult();
+
+        Assert.assertEquals(
+                "Out of sync",
+                testActivity.getTotal(),
+                testActivity.getSuccessful()
+        );
+
+        Assert.assertEquals(
+                "Loaded passed by images",
+                WINDOW_HEIGHT,
+                testActivity.getTotal()
+        );
+
+        assertVisibleImagesLoaded(testActivity, finalRecycler);
+
+    }
+
     private void waitForResult() {
         mainThread.loop();
     }
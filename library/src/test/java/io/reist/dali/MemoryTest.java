@@ -19,6 +19,7 @@ package io.reist.dali;
 import android.app.Activity;
 import android.app.Fragment;
 import android.app.FragmentTransaction;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
@@ -28,6 +29,8 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
@@ -37,13 +40,25 @@ import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowNetwork;
 import org.robolectric.util.ActivityController;
 
+import java.io.IOException;
 import java.util.Random;
-import java.util.concurrent.TimeUnit;
 
+import io.reist.dali.drawables.DaliDrawable;
+import io.reist.dali.glide.GlideImageLoader;
+
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 /**
  * Created by Reist on 08.11.16.
+ *
+ * A soak test which loads images from a local {@link ImageServer}. The load schedule depends only
+ * on a seed and the number of iterations, so it is the same on every run. The number of
+ * iterations can be set with the dali.soak.iterations system property.
+ *
+ * The schedule runs on the virtual clock of the main looper. Every load is awaited before the
+ * clock moves on, so the test doesn't depend on how fast the machine is. Leaks are detected by
+ * the bytes of live drawables which {@link MemoryTracker} counts at every screen switch.
  */
 
 @RunWith(RobolectricTestRunner.class)
@@ -54,42 +69,80 @@ import static junit.framework.Assert.fail;
 )
 public class MemoryTest {
 
-    private static final long SCREEN_LIFETIME =  TimeUnit.MILLISECONDS.convert(20, TimeUnit.SECONDS);
-    private static final long LOAD_PERIOD =  TimeUnit.MILLISECONDS.convert(600, TimeUnit.MILLISECONDS);
+    private static final int ITERATIONS = Integer.getInteger("dali.soak.iterations", 3000);
+
+    private static final long SEED = 42;
+
+    private static final long STEP = 20;
+    private static final int LOAD_PERIOD = 10;
+    private static final int SCREEN_LIFETIME = 250;
+
+    private static final int IMAGE_COUNT = 20;
+    private static final int MIN_IMAGE_SIZE = 100;
+    private static final int MAX_IMAGE_SIZE = 1000;
+
+    private static final int VIEW_SIZE = 200;
+
+    private static final long LOAD_TIMEOUT = 10000;
+
+    private static final int WARM_UP_SAMPLES = 2;
 
-    private static final long MEM_DUMP_PERIOD = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+    /**
+     * The image of the current screen, its placeholder and some slack for drawables which
+     * haven't been collected yet. Leaked screens pile up above it.
+     */
+    private static final int MAX_LIVE_DRAWABLES = 4;
 
-    //
+    /**
+     * A drawable holds its bitmap and a placeholder bitmap, both of them at most twice the view
+     * size because of size bucketing
+     */
+    private static final long MAX_DRAWABLE_BYTES =
+            MAX_LIVE_DRAWABLES * 2 * (2 * VIEW_SIZE) * (2 * VIEW_SIZE) * 4;
 
-    private static final String[] IMAGE_URLS = new String[] {
-            "https://static.pexels.com/photos/6548/cold-snow-winter-mountain.jpeg",
-            "http://os1.i.ua/1/11/560705.jpg",
-            "https://newevolutiondesigns.com/images/freebies/city-wallpaper-47.jpg",
-            "http://test.schoolchildparents.com/assets/images/flower1.jpg",
-            "http://www.rabstol.net/uploads/gallery/main/553/rabstol_net_fire_04.jpg"
-    };
+    private static final Random RANDOM = new Random(SEED);
 
-    private static final Random RANDOM = new Random();
+    private static ImageServer imageServer;
 
-    private static final int MEM_CHECKS_MIN = IMAGE_URLS.length + 1;
-    private static final int MEM_CHECKS_MAX = MEM_CHECKS_MIN * 2;
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        Dali.setMainImageLoaderClass(GlideImageLoader.class);
+        imageServer = new ImageServer();
+        imageServer.start();
+    }
 
-    private volatile boolean finish = false;
-    private volatile boolean leak = false;
+    @AfterClass
+    public static void afterClass() throws IOException {
+        imageServer.shutdown();
+    }
 
     @Test
     public void fragmentSwitching() {
 
-        new MemoryChecker().start();
+        SoakMonitor monitor = new SoakMonitor(WARM_UP_SAMPLES, imageServer);
 
-        doUiWork();
+        doUiWork(monitor);
 
-        if (leak) {
-            fail("Leak detected");
-        }
+        System.out.println(monitor.getReport());
+        System.out.println(Dali.getMetrics());
+
+        assertTrue(
+                "Leak detected: " + monitor.getPeakDrawableCount() + " live drawables",
+                monitor.getPeakDrawableCount() <= MAX_LIVE_DRAWABLES
+        );
+        assertTrue(
+                "Leak detected: " + monitor.getPeakDrawableBytes() + " bytes of live drawables",
+                monitor.getPeakDrawableBytes() <= MAX_DRAWABLE_BYTES
+        );
 
     }
 
+    static String nextImageUrl() {
+        int width = MIN_IMAGE_SIZE + RANDOM.nextInt(MAX_IMAGE_SIZE - MIN_IMAGE_SIZE);
+        int height = MIN_IMAGE_SIZE + RANDOM.nextInt(MAX_IMAGE_SIZE - MIN_IMAGE_SIZE);
+        return imageServer.getUrl(width, height, RANDOM.nextInt(IMAGE_COUNT));
+    }
+
     public static class TestActivity extends Activity {
 
         private static final int CONTAINER_ID = 1;
@@ -145,10 +198,23 @@ public class MemoryTest {
         }
 
         protected void loadImage() {
+
+            // Robolectric doesn't lay views out, a sized view is loaded without deferring
+            imageView.layout(0, 0, VIEW_SIZE, VIEW_SIZE);
+
             Dali.with(imageView)
-                    .load(IMAGE_URLS[RANDOM.nextInt(IMAGE_URLS.length)])
+                    .load(nextImageUrl())
                     .placeholder(R.drawable.placeholder)
                     .into(imageView);
+
+        }
+
+        /**
+         * Placeholders have no bitmaps
+         */
+        protected boolean isLoaded() {
+            Drawable drawable = imageView.getDrawable();
+            return drawable instanceof DaliDrawable && ((DaliDrawable) drawable).hasBitmap();
         }
 
     }
@@ -156,57 +222,50 @@ public class MemoryTest {
     private TestActivity testActivity;
     private ActivityController<TestActivity> activityController;
 
-    public void doUiWork() {
-
-        long lastRecreateTime = System.currentTimeMillis();
-        long lastLoadTime = System.currentTimeMillis();
+    public void doUiWork(SoakMonitor monitor) {
 
         createActivity();
 
         switchFragments();
         loadImage();
 
-        while (!finish && !leak) {
+        for (int i = 1; i <= ITERATIONS; i++) {
 
-            TestUtils.delay(40);
-            ShadowLooper.runMainLooperToNextTask();
+            ShadowLooper.idleMainLooper(STEP);
 
-            long currentTime = System.currentTimeMillis();
-
-            if (currentTime - lastRecreateTime > SCREEN_LIFETIME) {
+            if (i % SCREEN_LIFETIME == 0) {
+                monitor.sample(i * STEP);
                 switchFragments();
-                lastRecreateTime = currentTime;
             }
 
-            if (currentTime - lastLoadTime > LOAD_PERIOD) {
+            if (i % LOAD_PERIOD == 0) {
                 loadImage();
-                lastLoadTime = currentTime;
             }
 
         }
 
+        monitor.sample(ITERATIONS * STEP);
+
         destroyActivity();
 
     }
 
-
-    //List<Object> list = new ArrayList<>();
-
+    /**
+     * Starts a load and waits until it's delivered. Glide works on its own threads and posts
+     * results to the main looper, which is run without advancing the clock.
+     */
     protected void loadImage() {
 
         testActivity.fragment.loadImage();
 
-//        list.add(new Object() {
-//
-//            List<BigInteger> objects = new ArrayList<>();
-//
-//            {
-//                for (int i = 0; i < 1000000; i++) {
-//                    objects.add(new BigInteger(Integer.toString(RANDOM.nextInt(Integer.MAX_VALUE))));
-//                }
-//            }
-//
-//        });
+        long startTime = System.currentTimeMillis();
+        while (!testActivity.fragment.isLoaded()) {
+            if (System.currentTimeMillis() - startTime > LOAD_TIMEOUT) {
+                fail("Not loaded in " + LOAD_TIMEOUT + " ms");
+            }
+            Thread.yield();
+            ShadowLooper.idleMainLooper();
+        }
 
     }
 
@@ -225,69 +284,4 @@ public class MemoryTest {
         testActivity = activityController.create().start().resume().visible().get();
     }
 
-    private class MemoryChecker extends Thread {
-
-        @Override
-        public void run() {
-
-            Runtime runtime = Runtime.getRuntime();
-
-            long memCheck = 0;
-
-            long maxUsedMemory = -1;
-            long maxTotalMemory = -1;
-
-            long lastMaxUsedMemory = -1;
-            long lastMaxTotalMemory = -1;
-
-            while (!finish && !leak) {
-
-                TestUtils.delay(MEM_DUMP_PERIOD);
-
-                // measure min, current, max
-                long totalMemory = runtime.totalMemory();
-                if (maxTotalMemory == -1 || totalMemory > maxTotalMemory) {
-                    maxTotalMemory = totalMemory;
-                }
-                long usedMemory = totalMemory - runtime.freeMemory();
-                if (maxUsedMemory == -1 || usedMemory > maxUsedMemory) {
-                    maxUsedMemory = usedMemory;
-                }
-
-                // init if needed
-                if (lastMaxTotalMemory == -1) {
-                    lastMaxTotalMemory = maxTotalMemory;
-                }
-                if (lastMaxUsedMemory == -1) {
-                    lastMaxUsedMemory = maxUsedMemory;
-                }
-
-                // checks
-                memCheck++;
-                if (memCheck >= MEM_CHECKS_MAX) {
-                    finish = true;
-                } else if (memCheck >= MEM_CHECKS_MIN) {
-                    if (maxUsedMemory > lastMaxUsedMemory && maxTotalMemory > lastMaxTotalMemory) {
-                        leak = true;
-                    }
-                }
-
-                // print stats
-                System.out.println("Count: " + memCheck + "/" + MEM_CHECKS_MAX);
-                System.out.println("Max total: " + maxTotalMemory);
-                System.out.println("Max used: " + maxUsedMemory);
-                System.out.println();
-
-                // keep memory usage to minimum
-                System.gc();
-
-                lastMaxTotalMemory = maxTotalMemory;
-                lastMaxUsedMemory = maxUsedMemory;
-
-            }
-
-        }
-
-    }
-
 }
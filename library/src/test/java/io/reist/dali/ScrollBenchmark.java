@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays scroll traces on a {@link ViewRecycler} and reports time-to-visible percentiles,
+ * wasted loads (completed after a view was rebound), cancellations (a view was rebound before
+ * its image became visible) and main thread time per bind. Subclasses choose an image loader,
+ * so that engines can be compared on the same workload.
+ */
+public abstract class ScrollBenchmark {
+
+    public static final int WINDOW_HEIGHT = 5;
+    public static final int DATA_SET_LENGTH = 200;
+
+    private static final long SETTLE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    @Test
+    public void steady() {
+        run(ScrollTrace.steady(0, 60, 1));
+    }
+
+    @Test
+    public void fling() {
+        run(ScrollTrace.fling(0, 8));
+    }
+
+    @Test
+    public void backAndForth() {
+        run(ScrollTrace.backAndForth(0, 20, 2, 3));
+    }
+
+    protected Stats run(ScrollTrace trace) {
+
+        TestActivity testActivity = Robolectric.setupActivity(TestActivity.class);
+
+        Stats stats = testActivity.stats;
+        ViewRecycler<TestImageView> recycler = testActivity.recycler;
+
+        recycler.play(trace);
+
+        // let the last window load
+        long startTime = System.currentTimeMillis();
+        int lastPosition = trace.getLastPosition();
+        while (!stats.isVisible(lastPosition, lastPosition + WINDOW_HEIGHT) &&
+                System.currentTimeMillis() - startTime < SETTLE_TIMEOUT) {
+            ShadowLooper.idleMainLooper();
+            TestUtils.delay(50);
+        }
+
+        System.out.println(getClass().getSimpleName() + "." + trace.getName() + ": " + stats);
+
+        Assert.assertTrue(
+                "Not all visible images loaded",
+                stats.isVisible(lastPosition, lastPosition + WINDOW_HEIGHT)
+        );
+
+        return stats;
+
+    }
+
+    public static class Stats implements TestImageView.Callback {
+
+        private final Map<TestImageView, Integer> boundKeys = new WeakHashMap<>();
+
+        /**
+         * Bind times of keys which are bound and not visible yet
+         */
+        private final Map<Integer, Long> pendingKeys = new HashMap<>();
+
+        private final List<Integer> visibleKeys = new ArrayList<>();
+
+        private final List<Long> timesToVisible = new ArrayList<>();
+
+        private int binds;
+        private long bindTime;
+
+        private int wastedLoads;
+        private int cancellations;
+
+        synchronized void onBind(TestImageView view, int key) {
+
+            Integer previousKey = boundKeys.put(view, key);
+            if (previousKey != null && pendingKeys.remove(previousKey) != null) {
+                cancellations++;
+            }
+            if (previousKey != null) {
+                visibleKeys.remove(previousKey);
+            }
+
+            pendingKeys.put(key, System.nanoTime());
+
+        }
+
+        synchronized void onBindFinished(long bindTime) {
+            binds++;
+            this.bindTime += bindTime;
+        }
+
+        @Override
+        public synchronized void onSetImageDrawable(int expectedKey, int actualKey) {
+            if (actualKey == -1) {  // a placeholder
+                return;
+            }
+            if (expectedKey != actualKey) {
+                wastedLoads++;
+                return;
+            }
+            Long startTime = pendingKeys.remove(actualKey);
+            if (startTime != null) {
+                timesToVisible.add(System.nanoTime() - startTime);
+                visibleKeys.add(actualKey);
+            }
+        }
+
+        synchronized boolean isVisible(int start, int end) {
+            for (int i = start; i < Math.min(end, DATA_SET_LENGTH); i++) {
+                if (!visibleKeys.contains(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return a time-to-visible percentile in milliseconds
+         */
+        public synchronized long getTimeToVisible(int percentile) {
+            if (timesToVisible.isEmpty()) {
+                return -1;
+            }
+            List<Long> sorted = new ArrayList<>(timesToVisible);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+        }
+
+        /**
+         * @return mean main thread time per bind in microseconds
+         */
+        public synchronized long getBindTime() {
+            return binds == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(bindTime / binds);
+        }
+
+        public synchronized int getWastedLoads() {
+            return wastedLoads;
+        }
+
+        public synchronized int getCancellations() {
+            return cancellations;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "binds=" + binds +
+                    " visible=" + timesToVisible.size() +
+                    " ttv50=" + getTimeToVisible(50) + "ms" +
+                    " ttv90=" + getTimeToVisible(90) + "ms" +
+                    " ttv99=" + getTimeToVisible(99) + "ms" +
+                    " wasted=" + wastedLoads +
+                    " cancellations=" + cancellations +
+                    " bindTime=" + getBindTime() + "us";
+        }
+
+    }
+
+    static class TestActivity extends Activity {
+
+        private final Stats stats = new Stats();
+
+        private ViewRecycler<TestImageView> recycler;
+
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+
+            super.onCreate(savedInstanceState);
+
+            recycler = new ViewRecycler<>(WINDOW_HEIGHT, new ViewRecycler.Adapter<TestImageView>() {
+
+                @Override
+                public int getCount() {
+                    return DATA_SET_LENGTH;
+                }
+
+                @Override
+                public TestImageView createView(int i) {
+                    return new TestImageView(TestActivity.this, stats);
+                }
+
+                @Override
+                public void bindView(TestImageView testImageView, int i) {
+                    testImageView.setExpectedKey(i);
+                    stats.onBind(testImageView, i);
+                    Dali.with(TestActivity.this)
+                            .load(TestUtils.keyToUrl(i))
+                            .placeholder(android.R.color.black)
+                            .targetSize(1, 1)
+                            .disableTransformation(true)    // to keep bitmap meta data
+                            .into(testImageView);
+                }
+
+            });
+
+            recycler.setBindListener(new ViewRecycler.BindListener<TestImageView>() {
+
+                @Override
+                public void onBind(TestImageView testImageView, int i, long bindTime) {
+                    stats.onBindFinished(bindTime);
+                }
+
+            });
+
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scripted sequence of {@link ViewRecycler} positions, one per frame.
+ */
+public class ScrollTrace {
+
+    public static final long FRAME_INTERVAL = 16;
+
+    private final String name;
+    private final long frameInterval;
+    private final List<Integer> positions = new ArrayList<>();
+
+    public ScrollTrace(String name, long frameInterval) {
+        this.name = name;
+        this.frameInterval = frameInterval;
+    }
+
+    /**
+     * Scrolls from the start to the end with a constant speed
+     */
+    public static ScrollTrace steady(int start, int end, int step) {
+        return new ScrollTrace("steady", FRAME_INTERVAL).scroll(start, end, step);
+    }
+
+    /**
+     * Starts with a high speed which decays by a half every few frames, like a fling does
+     */
+    public static ScrollTrace fling(int start, int velocity) {
+
+        ScrollTrace trace = new ScrollTrace("fling", FRAME_INTERVAL);
+
+        int position = start;
+        for (int frame = 0; velocity > 0; frame++) {
+            position += velocity;
+            trace.positions.add(position);
+            if (frame % 4 == 3) {
+                velocity /= 2;
+            }
+        }
+
+        return trace;
+
+    }
+
+    /**
+     * Scrolls between two positions several times
+     */
+    public static ScrollTrace backAndForth(int start, int end, int step, int times) {
+        ScrollTrace trace = new ScrollTrace("backAndForth", FRAME_INTERVAL);
+        for (int i = 0; i < times; i++) {
+            trace.scroll(start, end, step).scroll(end, start, step);
+        }
+        return trace;
+    }
+
+    public ScrollTrace scroll(int start, int end, int step) {
+        if (start <= end) {
+            for (int position = start; position < end; position += step) {
+                positions.add(position);
+            }
+        } else {
+            for (int position = start; position > end; position -= step) {
+                positions.add(position);
+            }
+        }
+        positions.add(end);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getFrameInterval() {
+        return frameInterval;
+    }
+
+    public List<Integer> getPositions() {
+        return positions;
+    }
+
+    public int getLastPosition() {
+        return positions.get(positions.size() - 1);
+    }
+
+}
@@ -17,6 +17,7 @@
 package io.reist.dali;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -44,6 +45,19 @@ public class ShadowFadingDaliDrawable extends ShadowDrawable {
             @Nullable Drawable placeholder,
             @Nullable Bitmap placeholderBitmap,
             boolean noFade
+    ) {
+        __constructor__(bitmap, null, scaleMode, targetWidth, targetHeight, placeholder, placeholderBitmap, noFade);
+    }
+
+    public void __constructor__(
+            @Nullable Bitmap bitmap,
+            @Nullable Rect region,
+            @NonNull ScaleMode scaleMode,
+            float targetWidth,
+            float targetHeight,
+            @Nullable Drawable placeholder,
+            @Nullable Bitmap placeholderBitmap,
+            boolean noFade
     ) {
         Object shadow = null;
         if (bitmap != null) {
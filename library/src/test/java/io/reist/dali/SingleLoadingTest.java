@@ -81,6 +81,85 @@ public abstract class SingleLoadingTest {
 
     }
 
+    @Test
+    public void testLoadWithDaliHandleCallback() {
+
+        Dali.with(RuntimeEnvironment.application).load(TEST_URL).into(new DaliHandleCallback() {
+
+            @Override
+            public void onImageLoaded(@NonNull BitmapHandle handle) {
+
+                handle.retain();
+                handle.release();
+                Assert.assertFalse(handle.isReleased());
+                Assert.assertNotNull(handle.getBitmap());
+
+                handle.release();
+                Assert.assertTrue(handle.isReleased());
+
+                notifyAboutResult();
+
+            }
+
+        });
+
+        // wait until the request is executed and the result is posted to the main thread
+        waitForResult();
+
+    }
+
+    @Test
+    public void testSubmit() {
+
+        // nothing else references the listener
+        Dali.with(RuntimeEnvironment.application).load(TEST_URL).submit().addListener(new DaliCallback() {
+
+            @Override
+            public void onImageLoaded(@NonNull Bitmap bitmap) {
+                notifyAboutResult();
+            }
+
+        });
+
+        System.gc();
+
+        // wait until the request is executed and the result is posted to the main thread
+        waitForResult();
+
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetOnMainThread() throws Exception {
+        Dali.with(RuntimeEnvironment.application).load(TEST_URL).submit().get();
+    }
+
+    @Test
+    public void testGet() {
+
+        new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Dali.with(RuntimeEnvironment.application).load(TEST_URL).get(1, 1);
+                    notifyAboutResult();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+        }.start();
+
+        // the load is started on the main thread
+        waitForResult();
+
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBlockingGetOnMainThread() throws Exception {
+        Dali.with(RuntimeEnvironment.application).load(TEST_URL).get(1, 1);
+    }
+
     protected static class TestActivity extends Activity implements TestImageView.Callback {
 
         private SingleLoadingTest test;
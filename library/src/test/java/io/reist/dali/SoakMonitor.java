@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples {@link DaliMetrics} when a soak test asks for it. The time of a sample is the
+ * test's own clock, e.g. the virtual time of the main looper, so the samples depend only on the
+ * load schedule. The samples give the peak memory held by live drawables, a leak slope (a least
+ * squares fit of drawable bytes against time after a warm-up) and throughput.
+ */
+public class SoakMonitor {
+
+    private static final int MAX_COLLECTIONS = 5;
+
+    private final int warmUpSamples;
+    private final ImageServer server;
+
+    private final List<Sample> samples = new ArrayList<>();
+
+    public SoakMonitor(int warmUpSamples, ImageServer server) {
+        this.warmUpSamples = warmUpSamples;
+        this.server = server;
+    }
+
+    /**
+     * Collects garbage, so that {@link MemoryTracker} forgets unreachable drawables, and adds
+     * a sample
+     *
+     * @param time  milliseconds since the start of the test
+     */
+    public Sample sample(long time) {
+
+        DaliMetrics metrics = collect();
+
+        Sample sample = new Sample(
+                time,
+                metrics.drawableBytes,
+                metrics.drawableCount,
+                server.getServedImages()
+        );
+
+        samples.add(sample);
+
+        System.out.println(sample);
+
+        return sample;
+
+    }
+
+    /**
+     * A single collection may not clear every weak reference, so it's repeated while it frees
+     * something
+     */
+    private static DaliMetrics collect() {
+
+        DaliMetrics metrics = DaliLoader.getInstance().getMetrics();
+
+        for (int i = 0; i < MAX_COLLECTIONS; i++) {
+
+            System.gc();
+            System.runFinalization();
+
+            DaliMetrics collected = DaliLoader.getInstance().getMetrics();
+            boolean freed = collected.drawableCount < metrics.drawableCount;
+            metrics = collected;
+
+            if (!freed && i > 0) {
+                break;
+            }
+
+        }
+
+        return metrics;
+
+    }
+
+    public List<Sample> getSamples() {
+        return new ArrayList<>(samples);
+    }
+
+    /**
+     * @return the maximum number of bytes held by live drawables after the warm-up
+     */
+    public long getPeakDrawableBytes() {
+        long peak = 0;
+        for (int i = warmUpSamples; i < samples.size(); i++) {
+            peak = Math.max(peak, samples.get(i).drawableBytes);
+        }
+        return peak;
+    }
+
+    /**
+     * @return the maximum number of live drawables after the warm-up
+     */
+    public int getPeakDrawableCount() {
+        int peak = 0;
+        for (int i = warmUpSamples; i < samples.size(); i++) {
+            peak = Math.max(peak, samples.get(i).drawableCount);
+        }
+        return peak;
+    }
+
+    /**
+     * @return the growth of drawable bytes in bytes per second after the warm-up
+     */
+    public double getLeakSlope() {
+
+        if (samples.size() <= warmUpSamples + 1) {
+            return 0;
+        }
+        List<Sample> samples = this.samples.subList(warmUpSamples, this.samples.size());
+
+        double meanTime = 0;
+        double meanBytes = 0;
+        for (Sample sample : samples) {
+            meanTime += sample.time;
+            meanBytes += sample.drawableBytes;
+        }
+        meanTime /= samples.size();
+        meanBytes /= samples.size();
+
+        double covariance = 0;
+        double variance = 0;
+        for (Sample sample : samples) {
+            double dt = sample.time - meanTime;
+            covariance += dt * (sample.drawableBytes - meanBytes);
+            variance += dt * dt;
+        }
+
+        return variance == 0 ? 0 : covariance / variance * 1000;
+
+    }
+
+    /**
+     * @return images served per second of the test's clock
+     */
+    public double getThroughput() {
+        if (samples.isEmpty()) {
+            return 0;
+        }
+        Sample last = samples.get(samples.size() - 1);
+        return last.time == 0 ? 0 : last.servedImages * 1000.0 / last.time;
+    }
+
+    public String getReport() {
+        return "Peak drawable memory: " + getPeakDrawableBytes() + " bytes\n" +
+                "Peak drawable count: " + getPeakDrawableCount() + "\n" +
+                "Leak slope: " + Math.round(getLeakSlope()) + " bytes/s\n" +
+                "Throughput: " + String.format("%.2f", getThroughput()) + " images/s";
+    }
+
+    public static class Sample {
+
+        final long time;
+        final long drawableBytes;
+        final int drawableCount;
+        final long servedImages;
+
+        Sample(long time, long drawableBytes, int drawableCount, long servedImages) {
+            this.time = time;
+            this.drawableBytes = drawableBytes;
+            this.drawableCount = drawableCount;
+            this.servedImages = servedImages;
+        }
+
+        @Override
+        public String toString() {
+            return "t=" + time + "ms" +
+                    " drawables=" + drawableCount + "/" + drawableBytes + "B" +
+                    " served=" + servedImages;
+        }
+
+    }
+
+}
@@ -18,6 +18,8 @@ package io.reist.dali;
 
 import android.view.View;
 
+import org.robolectric.shadows.ShadowLooper;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,6 +38,8 @@ public class ViewRecycler<V extends View> {
 
     private final List<ViewHolder<V>> viewHolders = new ArrayList<>();
 
+    private BindListener<V> bindListener;
+
     public ViewRecycler(int windowHeight, Adapter<V> adapter) {
         this.windowHeight = windowHeight;
         this.adapter = adapter;
@@ -60,7 +64,15 @@ public class ViewRecycler<V extends View> {
         // bind data to visible views
         for (int i = windowStart; i < windowEnd; i++) {
             ViewHolder<V> viewHolder = createOrGet(i);
+            if (viewHolder.bound == i) {
+                continue;
+            }
+            long startTime = System.nanoTime();
             adapter.bindView(viewHolder.v, i);
+            viewHolder.bound = i;
+            if (bindListener != null) {
+                bindListener.onBind(viewHolder.v, i, System.nanoTime() - startTime);
+            }
         }
 
         // recycle invisible views
@@ -75,6 +87,11 @@ public class ViewRecycler<V extends View> {
     }
 
     private ViewHolder<V> createOrGet(int i) {
+        for (ViewHolder<V> holder : viewHolders) {
+            if (holder.i == i) {
+                return holder;
+            }
+        }
         for (ViewHolder<V> holder : viewHolders) {
             if (holder.i == -1) {
                 holder.i = i;
@@ -102,11 +119,37 @@ public class ViewRecycler<V extends View> {
         return windowHeight;
     }
 
+    /**
+     * Enables the benchmark mode, the listener is notified about each bind and the time spent in
+     * {@link Adapter#bindView(View, int)}
+     */
+    public void setBindListener(BindListener<V> bindListener) {
+        this.bindListener = bindListener;
+    }
+
+    /**
+     * Renders each position of a trace and runs pending main thread tasks, waiting for
+     * {@link ScrollTrace#getFrameInterval()} between frames
+     */
+    public void play(ScrollTrace trace) {
+        for (int position : trace.getPositions()) {
+            setPosition(position);
+            render();
+            ShadowLooper.idleMainLooper();
+            TestUtils.delay(trace.getFrameInterval());
+        }
+    }
+
     private static class ViewHolder<V> {
 
         private final V v;
         private int i;
 
+        /**
+         * A position which was bound to the view last time
+         */
+        private int bound = -1;
+
         public ViewHolder(V v, int i) {
             this.v = v;
             this.i = i;
@@ -124,4 +167,10 @@ public class ViewRecycler<V extends View> {
 
     }
 
+    public interface BindListener<V extends View> {
+
+        void onBind(V v, int i, long bindTime);
+
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import io.reist.dali.DecodeBudget;
+
+/**
+ * Checks that the budget of a decoded bitmap is held while the bitmap is transformed
+ */
+public class BudgetedTransformationTest {
+
+    private static final long BYTES = 60;
+
+    private DecodeBudget budget;
+    private Resource<Bitmap> decoded;
+    private BudgetedBitmapDecoder.BudgetedResource budgeted;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        budget = new DecodeBudget(100, false);
+        Assert.assertTrue(budget.tryAcquire(BYTES));
+        decoded = Mockito.mock(Resource.class);
+        budgeted = new BudgetedBitmapDecoder.BudgetedResource(decoded, budget, BYTES);
+    }
+
+    @Test
+    public void holdsBudgetWhileTransforming() {
+
+        final Resource<Bitmap> scaled = newResource();
+        final long[] inFlight = new long[1];
+
+        Resource<Bitmap> result = new BudgetedTransformation(Collections.singletonList(
+                new TestTransformation() {
+
+                    @Override
+                    public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+                        inFlight[0] = budget.getInFlightBytes();
+                        return scaled;
+                    }
+
+                }
+        )).transform(budgeted, 10, 10);
+
+        Assert.assertSame(scaled, result);
+        Assert.assertEquals(BYTES, inFlight[0]);
+        Assert.assertEquals(0, budget.getInFlightBytes());
+
+        // Glide recycles the decoded bitmap, the budget isn't released twice
+        budgeted.recycle();
+        Mockito.verify(decoded).recycle();
+        Assert.assertEquals(0, budget.getInFlightBytes());
+
+    }
+
+    @Test
+    public void releasesBudgetWithoutTransformations() {
+        List<Transformation<Bitmap>> transformations = Collections.emptyList();
+        Assert.assertSame(budgeted, new BudgetedTransformation(transformations).transform(budgeted, 10, 10));
+        Assert.assertEquals(0, budget.getInFlightBytes());
+    }
+
+    @Test
+    public void releasesBudgetOfCancelledTransformation() {
+
+        try {
+            new BudgetedTransformation(Collections.singletonList(
+                    new TestTransformation() {
+
+                        @Override
+                        public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+                            throw new CancellationException();
+                        }
+
+                    }
+            )).transform(budgeted, 10, 10);
+            Assert.fail("Not cancelled");
+        } catch (CancellationException ignored) {}
+
+        Assert.assertEquals(0, budget.getInFlightBytes());
+
+    }
+
+    @Test
+    public void recyclesIntermediateResults() {
+
+        final Resource<Bitmap> intermediate = newResource();
+        final Resource<Bitmap> last = newResource();
+
+        List<Transformation<Bitmap>> transformations = new ArrayList<>();
+        transformations.add(new TestTransformation() {
+
+            @Override
+            public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+                return intermediate;
+            }
+
+        });
+        transformations.add(new TestTransformation() {
+
+            @Override
+            public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+                return last;
+            }
+
+        });
+
+        Assert.assertSame(last, new BudgetedTransformation(transformations).transform(budgeted, 10, 10));
+
+        Mockito.verify(intermediate).recycle();
+        Mockito.verify(last, Mockito.never()).recycle();
+        Mockito.verify(decoded, Mockito.never()).recycle();
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Resource<Bitmap> newResource() {
+        return Mockito.mock(Resource.class);
+    }
+
+    private abstract static class TestTransformation implements Transformation<Bitmap> {
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.os.Build;
+import android.util.Base64;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.ImageServer;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.JELLY_BEAN
+)
+public class DataUrlLoaderTest {
+
+    @Test
+    public void decodesOnFetch() throws Exception {
+
+        byte[] bmp = ImageServer.createBmp(4, 4, 1);
+        String url = "data:image/bmp;base64," + Base64.encodeToString(bmp, Base64.NO_WRAP);
+
+        Assert.assertTrue(DataUrlLoader.isDataUrl(url));
+        Assert.assertTrue(DataUrlLoader.isDataUrl("DATA:image/bmp;base64,"));
+        Assert.assertFalse(DataUrlLoader.isDataUrl("http://example.com/data:"));
+
+        DataFetcher<InputStream> fetcher = new DataUrlLoader().getResourceFetcher(url, 4, 4);
+
+        // the url is the cache key
+        Assert.assertEquals(url, fetcher.getId());
+        Assert.assertArrayEquals(bmp, read(fetcher.loadData(Priority.NORMAL)));
+
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnPlainData() throws Exception {
+        new DataUrlLoader().getResourceFetcher("data:text/plain,image", 1, 1).loadData(Priority.NORMAL);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.ScaleMode;
+import io.reist.dali.Stage;
+
+/**
+ * Cancels decodes and transformations the way Glide does it, by interrupting the job's thread
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.JELLY_BEAN,
+        application = GlideTestApp.class
+)
+public class GlideCancellationTest {
+
+    @After
+    public void tearDown() {
+        // clears the interrupt
+        Thread.interrupted();
+    }
+
+    @Test
+    public void skipsDecodeOfCancelledJob() throws Exception {
+
+        @SuppressWarnings("unchecked")
+        ResourceDecoder<InputStream, Bitmap> decoder = Mockito.mock(ResourceDecoder.class);
+
+        Thread.currentThread().interrupt();
+
+        try {
+            new CancellableBitmapDecoder(decoder).decode(Mockito.mock(InputStream.class), 10, 10);
+            Assert.fail("Decoded");
+        } catch (InterruptedIOException ignored) {}
+
+        Mockito.verifyZeroInteractions(decoder);
+
+    }
+
+    @Test
+    public void recyclesBitmapOfJobCancelledWhileDecoding() throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final Resource<Bitmap> resource = Mockito.mock(Resource.class);
+
+        ResourceDecoder<InputStream, Bitmap> decoder = new TestDecoder() {
+
+            @Override
+            public Resource<Bitmap> decode(InputStream source, int width, int height) {
+                // Glide cancels the job in the middle of decoding
+                Thread.currentThread().interrupt();
+                return resource;
+            }
+
+        };
+
+        try {
+            new CancellableBitmapDecoder(decoder).decode(Mockito.mock(InputStream.class), 10, 10);
+            Assert.fail("Decoded");
+        } catch (InterruptedIOException ignored) {}
+
+        Mockito.verify(resource).recycle();
+
+    }
+
+    @Test
+    public void skipsTransformationOfCancelledJob() {
+
+        BitmapPool bitmapPool = Mockito.mock(BitmapPool.class);
+        Bitmap bitmap = Bitmap.createBitmap(20, 20, Bitmap.Config.ARGB_8888);
+
+        GlideImageLoader.OnlyScaleDownTransformation transformation =
+                new GlideImageLoader.OnlyScaleDownTransformation(
+                        RuntimeEnvironment.application,
+                        ScaleMode.CENTER_CROP
+                );
+
+        Thread.currentThread().interrupt();
+
+        try {
+            transformation.transform(bitmapPool, bitmap, 10, 10);
+            Assert.fail("Transformed");
+        } catch (CancellationException ignored) {}
+
+        Mockito.verifyZeroInteractions(bitmapPool);
+
+    }
+
+    @Test(timeout = 10000)
+    public void stopsStagedTransformationOnInterrupt() throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        Transformation<Bitmap> transformation = new Transformation<Bitmap>() {
+
+            @Override
+            public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return resource;
+            }
+
+            @Override
+            public String getId() {
+                return "blocking";
+            }
+
+        };
+
+        Stage stage = new Stage("transform", 1, 1);
+        final StagedTransformation stagedTransformation = new StagedTransformation(stage, transformation);
+        final Throwable[] error = new Throwable[1];
+
+        Thread job = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    stagedTransformation.transform(null, 10, 10);
+                } catch (Throwable e) {
+                    error[0] = e;
+                }
+            }
+
+        };
+        job.start();
+
+        started.await();
+        job.interrupt();
+        job.join();
+
+        Assert.assertTrue("Not cancelled: " + error[0], error[0] instanceof CancellationException);
+
+        // the interrupt is passed on to the transform thread
+        interrupted.await();
+
+        stage.shutdown();
+
+    }
+
+    private abstract static class TestDecoder implements ResourceDecoder<InputStream, Bitmap> {
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.os.Build;
+
+import com.bumptech.glide.Glide;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowNetwork;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.Dali;
+import io.reist.dali.ImageServer;
+import io.reist.dali.ShadowNetworkSecurityPolicy;
+import io.reist.dali.TestImageView;
+import io.reist.dali.TestUtils;
+
+/**
+ * Measures the time from the first request to the first image set to a view with Glide torn
+ * down before each test, with and without {@link Dali#warmUp(android.content.Context)}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.JELLY_BEAN,
+        shadows = {ShadowNetwork.class, ShadowNetworkSecurityPolicy.class}
+)
+public class GlideColdStartBenchmark {
+
+    private static final int IMAGE_SIZE = 100;
+
+    private static final long TIMEOUT = 10000;
+
+    private static ImageServer imageServer;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        imageServer = new ImageServer();
+        imageServer.start();
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException {
+        imageServer.shutdown();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+
+        // Glide keeps its singleton between tests
+        Method tearDown = Glide.class.getDeclaredMethod("tearDown");
+        tearDown.setAccessible(true);
+        tearDown.invoke(null);
+
+        Dali.setMainImageLoaderClass(GlideImageLoader.class);
+
+    }
+
+    @Test
+    public void coldStart() {
+        long timeToImage = loadFirstImage(1);
+        System.out.println("Cold start: " + timeToImage + " ms to the first image");
+    }
+
+    @Test
+    public void warmStart() throws InterruptedException {
+
+        final AtomicLong warmUpTime = new AtomicLong(-1);
+
+        // as if called from Application.onCreate()
+        Thread warmUpThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                Dali.warmUp(RuntimeEnvironment.application);
+                warmUpTime.set(System.currentTimeMillis() - startTime);
+            }
+
+        });
+        warmUpThread.start();
+
+        // Glide starts requests on the main thread
+        long startTime = System.currentTimeMillis();
+        while (warmUpThread.isAlive() && System.currentTimeMillis() - startTime < TIMEOUT) {
+            ShadowLooper.idleMainLooper();
+            TestUtils.delay(1);
+        }
+        warmUpThread.join(TIMEOUT);
+
+        Assert.assertTrue("Not warmed up", warmUpTime.get() >= 0);
+
+        long timeToImage = loadFirstImage(2);
+        System.out.println("Warm start: " + timeToImage + " ms to the first image, warm-up took " + warmUpTime + " ms");
+
+    }
+
+    /**
+     * @return milliseconds from the request to the image
+     */
+    private static long loadFirstImage(int seed) {
+
+        final AtomicLong loadTime = new AtomicLong(-1);
+
+        TestImageView view = new TestImageView(RuntimeEnvironment.application, new TestImageView.Callback() {
+
+            @Override
+            public void onSetImageDrawable(int expectedKey, int actualKey) {
+                loadTime.compareAndSet(-1, System.nanoTime());
+            }
+
+        });
+
+        long startTime = System.nanoTime();
+
+        Dali.with(RuntimeEnvironment.application)
+                .load(imageServer.getUrl(IMAGE_SIZE, IMAGE_SIZE, seed))
+                .targetSize(IMAGE_SIZE, IMAGE_SIZE)
+                .into(view);
+
+        long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (loadTime.get() < 0 && System.currentTimeMillis() < timeout) {
+            ShadowLooper.idleMainLooper();
+            TestUtils.delay(1);
+        }
+
+        Assert.assertTrue("Not loaded", loadTime.get() >= 0);
+
+        return (loadTime.get() - startTime) / 1000000;
+
+    }
+
+}
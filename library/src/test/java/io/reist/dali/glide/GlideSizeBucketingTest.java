@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.os.Build;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.ImageRequest;
+import io.reist.dali.SizeBucketing;
+
+/**
+ * Replays a trace of list cells whose sizes differ by a few pixels, like cells of the same
+ * layout on different screens and orientations, against an LRU cache of decoded images. The
+ * cache is keyed by {@link GlideImageLoader#getRequestKey(ImageRequest, SizeBucketing)}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.JELLY_BEAN
+)
+public class GlideSizeBucketingTest {
+
+    private static final int URL_COUNT = 300;
+    private static final int REQUEST_COUNT = 20000;
+    private static final long CACHE_SIZE = 64 * 1024 * 1024;
+
+    private static final SizeBucketing LADDER = new SizeBucketing(128, 256, 384, 512, 768, 1024);
+
+    @Test
+    public void hitRate() {
+
+        double none = replay(SizeBucketing.NONE, false);
+        double powerOfTwo = replay(SizeBucketing.POWER_OF_TWO, false);
+        double ladder = replay(LADDER, false);
+
+        // every cell of the same layout shares an image
+        double layout = replay(LADDER, true);
+
+        System.out.println(
+                "Hit rate: none = " + none +
+                        ", power of two = " + powerOfTwo +
+                        ", ladder = " + ladder +
+                        ", layout = " + layout
+        );
+
+        Assert.assertTrue(ladder > none);
+        Assert.assertTrue(powerOfTwo > none);
+        Assert.assertEquals(layout, ladder, 0.0);
+
+    }
+
+    private static double replay(SizeBucketing sizeBucketing, boolean byLayout) {
+
+        Random random = new Random(1);
+        LruCache cache = new LruCache(CACHE_SIZE);
+
+        int hits = 0;
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+
+            // popular images are requested more often
+            double r = random.nextDouble();
+            int url = (int) (URL_COUNT * r * r);
+
+            // square and 3:2 cells, the heights are off by a pixel or two
+            boolean square = random.nextBoolean();
+            int width = 300 + random.nextInt(24);
+            int height = square ? width : width * 2 / 3 + random.nextInt(5) - 2;
+
+            ImageRequest request = new ImageRequest()
+                    .url("http://example.com/" + url + ".jpg")
+                    .targetSize(width, height);
+
+            String key = byLayout ?
+                    request.url + '|' + square :
+                    GlideImageLoader.getRequestKey(request, sizeBucketing);
+
+            long bytes = 4L *
+                    sizeBucketing.getWidth(width, height) *
+                    sizeBucketing.getHeight(width, height);
+
+            if (cache.get(key, bytes)) {
+                hits++;
+            }
+
+        }
+
+        return hits / (double) REQUEST_COUNT;
+
+    }
+
+    private static class LruCache {
+
+        private final long maxSize;
+        private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long size;
+
+        LruCache(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * @return true if the key has been found, otherwise it's added
+         */
+        boolean get(String key, long bytes) {
+
+            if (entries.get(key) != null) {
+                return true;
+            }
+
+            entries.put(key, bytes);
+            size += bytes;
+
+            Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().getValue();
+                iterator.remove();
+            }
+
+            return false;
+
+        }
+
+    }
+
+}
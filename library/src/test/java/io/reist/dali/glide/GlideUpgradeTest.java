@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowNetwork;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.Dali;
+import io.reist.dali.DaliCallback;
+import io.reist.dali.ImageRequest;
+import io.reist.dali.ImageServer;
+import io.reist.dali.ShadowNetworkSecurityPolicy;
+import io.reist.dali.TestUtils;
+
+/**
+ * Loads a low quality image from a local {@link ImageServer} and then upgrades it to the full
+ * quality. The upgrade must decode the source which the low quality request has cached.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.JELLY_BEAN,
+        shadows = {ShadowNetwork.class, ShadowNetworkSecurityPolicy.class}
+)
+public class GlideUpgradeTest {
+
+    private static final int ORIGINAL_SIZE = 512;
+    private static final int TARGET_SIZE = 200;
+    private static final int LOW_QUALITY_SIZE = 50;
+
+    private static final long TIMEOUT = 10000;
+
+    private static ImageServer imageServer;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        Dali.setMainImageLoaderClass(GlideImageLoader.class);
+        imageServer = new ImageServer();
+        imageServer.start();
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException {
+        imageServer.shutdown();
+    }
+
+    @Test
+    public void upgradeDoesNotDownloadAgain() {
+
+        String url = imageServer.getUrl(ORIGINAL_SIZE, ORIGINAL_SIZE, 1);
+
+        long lowQuality = download(
+                new ImageRequest(RuntimeEnvironment.application)
+                        .url(url)
+                        .targetSize(LOW_QUALITY_SIZE, LOW_QUALITY_SIZE)
+                        .lowQuality(true)
+        );
+        long upgrade = download(
+                new ImageRequest(RuntimeEnvironment.application)
+                        .url(url)
+                        .targetSize(TARGET_SIZE, TARGET_SIZE)
+                        .upgrade(true)
+        );
+
+        Assert.assertTrue("Nothing downloaded", lowQuality > 0);
+        Assert.assertEquals("Downloaded again", 0, upgrade);
+
+    }
+
+    /**
+     * @return bytes served for the request
+     */
+    private static long download(ImageRequest request) {
+
+        long servedBytes = imageServer.getServedBytes();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // the loader keeps callbacks weakly
+        DaliCallback callback = new DaliCallback() {
+
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                latch.countDown();
+            }
+
+        };
+        request.into(callback);
+
+        long startTime = System.currentTimeMillis();
+        while (latch.getCount() > 0 && System.currentTimeMillis() - startTime < TIMEOUT) {
+            ShadowLooper.idleMainLooper();
+            TestUtils.delay(50);
+        }
+
+        Assert.assertEquals("Not loaded by " + callback, 0, latch.getCount());
+
+        return imageServer.getServedBytes() - servedBytes;
+
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowNetwork;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.Dali;
+import io.reist.dali.DaliCallback;
+import io.reist.dali.ImageRequest;
+import io.reist.dali.ImageServer;
+import io.reist.dali.ShadowNetworkSecurityPolicy;
+import io.reist.dali.TestUtils;
+
+/**
+ * Loads thumbnails from a local {@link ImageServer} and compares the number of downloaded bytes
+ * with and without url variants.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.JELLY_BEAN,
+        shadows = {ShadowNetwork.class, ShadowNetworkSecurityPolicy.class}
+)
+public class GlideUrlVariantsTest {
+
+    private static final int ORIGINAL_SIZE = 1024;
+    private static final int THUMBNAIL_SIZE = 120;
+
+    private static final long TIMEOUT = 10000;
+
+    private static ImageServer imageServer;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        Dali.setMainImageLoaderClass(GlideImageLoader.class);
+        imageServer = new ImageServer();
+        imageServer.start();
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException {
+        imageServer.shutdown();
+    }
+
+    @Test
+    public void template() {
+
+        long original = download(request().url(imageServer.getUrl(ORIGINAL_SIZE, ORIGINAL_SIZE, 1)));
+        long thumbnail = download(request().url(imageServer.getTemplateUrl(2)));
+
+        System.out.println("Original: " + original + " bytes, thumbnail: " + thumbnail + " bytes");
+
+        Assert.assertTrue(thumbnail * 10 < original);
+
+    }
+
+    @Test
+    public void variants() {
+
+        long original = download(request().url(imageServer.getUrl(ORIGINAL_SIZE, ORIGINAL_SIZE, 3)));
+        long thumbnail = download(
+                request()
+                        .url(imageServer.getUrl(ORIGINAL_SIZE, ORIGINAL_SIZE, 4))
+                        .urlVariant(160, imageServer.getUrl(160, 160, 4))
+                        .urlVariant(480, imageServer.getUrl(480, 480, 4))
+        );
+
+        System.out.println("Original: " + original + " bytes, thumbnail: " + thumbnail + " bytes");
+
+        Assert.assertTrue(thumbnail * 10 < original);
+
+    }
+
+    private static ImageRequest request() {
+        return new ImageRequest(RuntimeEnvironment.application)
+                .targetSize(THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+    }
+
+    /**
+     * @return bytes served for the request
+     */
+    private static long download(ImageRequest request) {
+
+        long servedBytes = imageServer.getServedBytes();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // the loader keeps callbacks weakly
+        DaliCallback callback = new DaliCallback() {
+
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                latch.countDown();
+            }
+
+        };
+        request.into(callback);
+
+        long startTime = System.currentTimeMillis();
+        while (latch.getCount() > 0 && System.currentTimeMillis() - startTime < TIMEOUT) {
+            ShadowLooper.idleMainLooper();
+            TestUtils.delay(50);
+        }
+
+        Assert.assertEquals("Not loaded by " + callback, 0, latch.getCount());
+
+        return imageServer.getServedBytes() - servedBytes;
+
+    }
+
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.glide;
+
+import com.bumptech.glide.Priority;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reist.dali.CancellationPolicy;
+import io.reist.dali.DownloadCache;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Checks {@link ResumableStreamFetcher} against a local server which honors Range and If-Range
+ * headers and is able to cut a connection in the middle of a response body.
+ */
+public class ResumableStreamFetcherTest {
+
+    private static final int BODY_SIZE = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private RangeDispatcher dispatcher;
+    private OkHttpClient client;
+    private DownloadCache cache;
+
+    /**
+     * Body bytes which the client has read from the network
+     */
+    private final AtomicLong transferred = new AtomicLong();
+
+    /**
+     * Released when the client has read the first bytes of a body
+     */
+    private final CountDownLatch bodyStarted = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+
+        dispatcher = new RangeDispatcher();
+        dispatcher.setResource(randomBytes(1), "\"v1\"");
+
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        client = new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .addNetworkInterceptor(new CountingInterceptor(transferred, bodyStarted))
+                .build();
+
+        cache = new DownloadCache(folder.newFolder(), Long.MAX_VALUE);
+
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void resumesInterruptedDownload() throws Exception {
+
+        dispatcher.cutNext = true;
+        assertInterrupted(newFetcher());
+
+        String key = cache.key(getUrl());
+        long stored = cache.getBodyFile(key).length();
+        Assert.assertTrue("Nothing stored: " + stored, stored > 0 && stored < BODY_SIZE);
+
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+
+        server.takeRequest();
+        RecordedRequest resumed = server.takeRequest();
+        Assert.assertEquals("bytes=" + stored + "-", resumed.getHeader("Range"));
+        Assert.assertEquals("\"v1\"", resumed.getHeader("If-Range"));
+        Assert.assertEquals(BODY_SIZE - stored, dispatcher.lastSentLength);
+
+    }
+
+    @Test
+    public void restartsChangedResource() throws Exception {
+
+        dispatcher.cutNext = true;
+        assertInterrupted(newFetcher());
+
+        dispatcher.setResource(randomBytes(2), "\"v2\"");
+
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+        Assert.assertEquals(BODY_SIZE, dispatcher.lastSentLength);
+
+    }
+
+    @Test
+    public void restartsOnUnsatisfiableRange() throws Exception {
+
+        dispatcher.cutNext = true;
+        assertInterrupted(newFetcher());
+
+        dispatcher.rejectNextRange = true;
+
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+
+        server.takeRequest();
+        Assert.assertNotNull(server.takeRequest().getHeader("Range"));
+        Assert.assertNull(server.takeRequest().getHeader("Range"));
+        Assert.assertEquals(BODY_SIZE, dispatcher.lastSentLength);
+
+    }
+
+    @Test
+    public void restartsOnMisplacedRange() throws Exception {
+
+        dispatcher.cutNext = true;
+        assertInterrupted(newFetcher());
+
+        dispatcher.misplaceNextRange = true;
+
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+
+        server.takeRequest();
+        Assert.assertNotNull(server.takeRequest().getHeader("Range"));
+        Assert.assertNull(server.takeRequest().getHeader("Range"));
+        Assert.assertEquals(BODY_SIZE, dispatcher.lastSentLength);
+
+    }
+
+    @Test
+    public void doesNotResumeWithoutValidator() throws Exception {
+
+        dispatcher.setResource(randomBytes(3), null);
+
+        dispatcher.cutNext = true;
+        assertInterrupted(newFetcher());
+
+        Assert.assertFalse(cache.getBodyFile(cache.key(getUrl())).exists());
+
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+
+        server.takeRequest();
+        Assert.assertNull(server.takeRequest().getHeader("Range"));
+
+    }
+
+    @Test
+    public void removesCompletedDownload() throws Exception {
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+        Assert.assertFalse(cache.getBodyFile(cache.key(getUrl())).exists());
+    }
+
+    @Test
+    public void finishesCancelledDownloadPastThreshold() throws Exception {
+
+        dispatcher.throttled = true;
+
+        ResumableStreamFetcher fetcher = newFetcher(new CancellationPolicy(0.5f, 1));
+        cancelLater(fetcher);
+        load(fetcher);
+
+        // the body has been kept and is served without the network
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+        Assert.assertEquals(1, server.getRequestCount());
+
+    }
+
+    /**
+     * Glide cancels the fetcher and then interrupts the job's thread
+     */
+    @Test(timeout = 30000)
+    public void finishesInterruptedDownloadPastThreshold() throws Exception {
+
+        dispatcher.throttled = true;
+
+        // finishes whatever has been received, the first bytes may not be counted yet
+        final ResumableStreamFetcher fetcher = newFetcher(new CancellationPolicy(0f, 0));
+        final Throwable[] error = new Throwable[1];
+
+        Thread job = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    load(fetcher);
+                } catch (Throwable e) {
+                    error[0] = e;
+                }
+            }
+
+        };
+        job.start();
+
+        bodyStarted.await();
+        fetcher.cancel();
+        job.interrupt();
+        job.join();
+
+        Assert.assertTrue("Not cancelled: " + error[0], error[0] instanceof InterruptedIOException);
+
+        // the finisher holds the key until the body is complete
+        String key = cache.key(getUrl());
+        while (!cache.tryLock(key)) {
+            Thread.sleep(10);
+        }
+        cache.unlock(key);
+
+        Assert.assertArrayEquals(dispatcher.body, load(newFetcher()));
+        Assert.assertEquals(1, server.getRequestCount());
+
+    }
+
+    @Test
+    public void abortsCancelledDownloadBelowThreshold() throws Exception {
+
+        dispatcher.throttled = true;
+
+        ResumableStreamFetcher fetcher = newFetcher(CancellationPolicy.ABORT);
+        cancelLater(fetcher);
+        assertInterrupted(fetcher);
+
+    }
+
+    @Test(timeout = 30000)
+    public void stopsTransferOnCancel() throws Exception {
+
+        // a chunk per second, a cancel between chunks mustn't wait for the next one
+        dispatcher.throttled = true;
+        dispatcher.throttlePeriod = 1000;
+
+        final ResumableStreamFetcher fetcher = newFetcher(CancellationPolicy.ABORT);
+
+        final AtomicLong transferredAtCancel = new AtomicLong();
+
+        new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    bodyStarted.await();
+                } catch (InterruptedException ignored) {}
+                transferredAtCancel.set(transferred.get());
+                fetcher.cancel();
+            }
+
+        }.start();
+
+        assertInterrupted(fetcher);
+
+        // if the blocked read waited for the next chunk, the chunk would be counted
+        Assert.assertTrue("Nothing transferred before cancel", transferredAtCancel.get() > 0);
+        Assert.assertEquals("Transferred after cancel", transferredAtCancel.get(), transferred.get());
+
+    }
+
+    private String getUrl() {
+        return server.url("/image.jpg").toString();
+    }
+
+    private ResumableStreamFetcher newFetcher() {
+        return newFetcher(CancellationPolicy.ABORT);
+    }
+
+    private ResumableStreamFetcher newFetcher(CancellationPolicy cancellationPolicy) {
+        String url = getUrl();
+        return new ResumableStreamFetcher(
+                client,
+                cache,
+                url,
+                Collections.<String, String>emptyMap(),
+                url,
+                cancellationPolicy
+        );
+    }
+
+    private static void cancelLater(final ResumableStreamFetcher fetcher) {
+        new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                } catch (InterruptedException ignored) {}
+                fetcher.cancel();
+            }
+
+        }.start();
+    }
+
+    private static void assertInterrupted(ResumableStreamFetcher fetcher) throws Exception {
+        try {
+            fetcher.loadData(Priority.NORMAL);
+            Assert.fail("The connection hasn't been cut");
+        } catch (IOException ignored) {
+        } finally {
+            fetcher.cleanup();
+        }
+    }
+
+    private static byte[] load(ResumableStreamFetcher fetcher) throws Exception {
+        try {
+            InputStream in = fetcher.loadData(Priority.NORMAL);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            fetcher.cleanup();
+        }
+    }
+
+    private static byte[] randomBytes(long seed) {
+        byte[] bytes = new byte[BODY_SIZE];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class RangeDispatcher extends Dispatcher {
+
+        volatile byte[] body;
+        volatile String etag;
+        volatile boolean cutNext;
+        volatile boolean rejectNextRange;
+        volatile boolean misplaceNextRange;
+        volatile boolean throttled;
+        volatile long throttlePeriod = 50;
+        volatile long lastSentLength;
+
+        void setResource(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+
+            int start = 0;
+
+            String range = request.getHeader("Range");
+            String ifRange = request.getHeader("If-Range");
+            if (range != null && etag != null && etag.equals(ifRange)) {
+                start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            }
+
+            if (start > 0 && rejectNextRange) {
+                rejectNextRange = false;
+                return new MockResponse()
+                        .setResponseCode(416)
+                        .setHeader("Content-Range", "bytes */" + body.length);
+            }
+
+            if (start > 0 && misplaceNextRange) {
+                misplaceNextRange = false;
+                start /= 2;
+            }
+
+            MockResponse response = new MockResponse()
+                    .setBody(new Buffer().write(body, start, body.length - start));
+
+            if (start > 0) {
+                response
+                        .setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+            }
+
+            if (etag != null) {
+                response.setHeader("ETag", etag);
+            }
+
+            if (cutNext) {
+                cutNext = false;
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+
+            if (throttled) {
+                response.throttleBody(16 * 1024, throttlePeriod, TimeUnit.MILLISECONDS);
+            }
+
+            lastSentLength = body.length - start;
+
+            return response;
+
+        }
+
+    }
+
+    private static class CountingInterceptor implements Interceptor {
+
+        private final AtomicLong counter;
+        private final CountDownLatch started;
+
+        CountingInterceptor(AtomicLong counter, CountDownLatch started) {
+            this.counter = counter;
+            this.started = started;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+
+            Response response = chain.proceed(chain.request());
+            final ResponseBody body = response.body();
+
+            final BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        counter.addAndGet(read);
+                        started.countDown();
+                    }
+                    return read;
+                }
+
+            });
+
+            return response.newBuilder()
+                    .body(new ResponseBody() {
+
+                        @Override
+                        public MediaType contentType() {
+                            return body.contentType();
+                        }
+
+                        @Override
+                        public long contentLength() {
+                            return body.contentLength();
+                        }
+
+                        @Override
+                        public BufferedSource source() {
+                            return source;
+                        }
+
+                    })
+                    .build();
+
+        }
+
+    }
+
+}
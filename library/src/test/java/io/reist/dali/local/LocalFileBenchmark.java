@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.local;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.ImageRequest;
+import io.reist.dali.ImageServer;
+
+/**
+ * Decodes a directory of files with {@link LocalFileImageLoader} twice. The first pass reads
+ * bounds of every file, the second one finds them in the dimensions cache.
+ *
+ * The latency benchmark runs only if the dali.benchmark property is true. Robolectric shadows
+ * BitmapFactory, so its percentiles show the loader's own overhead, i.e. opening files and
+ * reading bounds, rather than decoding. The number of files can be set with the
+ * dali.local.files property.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.JELLY_BEAN)
+public class LocalFileBenchmark {
+
+    private static final boolean BENCHMARK = Boolean.getBoolean("dali.benchmark");
+
+    private static final int FILE_COUNT = Integer.getInteger("dali.local.files", 2000);
+
+    private static final int CACHE_TEST_FILE_COUNT = 10;
+
+    private static final int IMAGE_WIDTH = 64;
+    private static final int IMAGE_HEIGHT = 48;
+
+    private static final int TARGET_SIZE = 32;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File[] files;
+
+    private void createFiles(int count) throws IOException {
+        files = new File[count];
+        for (int i = 0; i < count; i++) {
+            files[i] = folder.newFile(i + ".bmp");
+            FileOutputStream out = new FileOutputStream(files[i]);
+            try {
+                out.write(ImageServer.createBmp(IMAGE_WIDTH, IMAGE_HEIGHT, i));
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    @Test
+    public void warmPassSkipsBounds() throws Exception {
+
+        createFiles(CACHE_TEST_FILE_COUNT);
+
+        LocalFileImageLoader imageLoader = new LocalFileImageLoader();
+
+        decodeAll(imageLoader);
+        Assert.assertEquals(CACHE_TEST_FILE_COUNT, imageLoader.getBoundsReads());
+
+        decodeAll(imageLoader);
+        Assert.assertEquals(CACHE_TEST_FILE_COUNT, imageLoader.getBoundsReads());
+
+    }
+
+    @Test
+    public void decodeDirectory() throws Exception {
+
+        Assume.assumeTrue("Set dali.benchmark to run", BENCHMARK);
+
+        createFiles(FILE_COUNT);
+
+        LocalFileImageLoader imageLoader = new LocalFileImageLoader();
+
+        long[] cold = decodeAll(imageLoader);
+        long[] warm = decodeAll(imageLoader);
+
+        System.out.println("Cold: " + report(cold));
+        System.out.println("Warm: " + report(warm));
+
+        Assert.assertEquals(FILE_COUNT, imageLoader.getBoundsReads());
+
+    }
+
+    private long[] decodeAll(LocalFileImageLoader imageLoader) throws Exception {
+
+        long[] latencies = new long[files.length];
+
+        for (int i = 0; i < files.length; i++) {
+
+            ImageRequest request = new ImageRequest(RuntimeEnvironment.application)
+                    .url(Uri.fromFile(files[i]).toString())
+                    .targetSize(TARGET_SIZE, TARGET_SIZE);
+
+            long start = System.nanoTime();
+            Bitmap bitmap = imageLoader.get(request);
+            latencies[i] = System.nanoTime() - start;
+
+            Assert.assertNotNull(bitmap);
+
+        }
+
+        return latencies;
+
+    }
+
+    private static String report(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted.length + " files" +
+                ", p50 = " + percentile(sorted, 50) + " us" +
+                ", p90 = " + percentile(sorted, 90) + " us" +
+                ", p99 = " + percentile(sorted, 99) + " us";
+    }
+
+    /**
+     * @return a latency percentile in microseconds
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.main;
+
+import android.os.Build;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.Dali;
+import io.reist.dali.DaliCallback;
+import io.reist.dali.DaliFuture;
+import io.reist.dali.DaliLoader;
+import io.reist.dali.ImageLoader;
+import io.reist.dali.ImageRequest;
+
+/**
+ * Checks that futures can be cancelled on any thread while loaders are only touched on the main
+ * thread.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = {Build.VERSION_CODES.JELLY_BEAN}
+)
+public class MainFutureTest {
+
+    @Before
+    public void setUp() {
+        Dali.setMainImageLoaderClass(PendingImageLoader.class);
+    }
+
+    @Test
+    public void cancelsOnWorkerThread() throws InterruptedException {
+
+        final DaliFuture future = Dali.with(RuntimeEnvironment.application).load("0").submit();
+
+        PendingImageLoader imageLoader = (PendingImageLoader) DaliLoader.getInstance().getMainImageLoader();
+        Assert.assertSame(future, imageLoader.callback);
+
+        Thread worker = new Thread() {
+
+            @Override
+            public void run() {
+                future.cancel(false);
+            }
+
+        };
+        worker.start();
+        worker.join();
+
+        Assert.assertTrue(future.isCancelled());
+
+        // the loader is cancelled when the main thread gets to it
+        Assert.assertNull(imageLoader.cancelledTarget);
+
+        ShadowLooper.idleMainLooper();
+
+        Assert.assertSame(future, imageLoader.cancelledTarget);
+        Assert.assertSame(Looper.getMainLooper().getThread(), imageLoader.cancelThread);
+
+    }
+
+    @Test
+    public void cancelsOnMainThread() {
+
+        DaliFuture future = Dali.with(RuntimeEnvironment.application).load("0").submit();
+
+        PendingImageLoader imageLoader = (PendingImageLoader) DaliLoader.getInstance().getMainImageLoader();
+
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertSame(future, imageLoader.cancelledTarget);
+        Assert.assertSame(Looper.getMainLooper().getThread(), imageLoader.cancelThread);
+
+    }
+
+    /**
+     * Never completes loads, records cancellations
+     */
+    public static class PendingImageLoader implements ImageLoader {
+
+        private DaliCallback callback;
+
+        private volatile Object cancelledTarget;
+        private volatile Thread cancelThread;
+
+        @Override
+        public void load(@NonNull ImageRequest request, @NonNull View view, boolean background) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void load(@NonNull ImageRequest request, @NonNull DaliCallback callback) {
+            this.callback = callback;
+            // DaliLoader cancels the callback's previous load before starting a new one
+            cancelledTarget = null;
+            cancelThread = null;
+        }
+
+        @Override
+        public void cancel(@NonNull Object target) {
+            cancelledTarget = target;
+            cancelThread = Thread.currentThread();
+        }
+
+        @Override
+        public void cancelAll() {}
+
+    }
+
+}
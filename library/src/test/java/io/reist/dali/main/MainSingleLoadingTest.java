@@ -72,6 +72,40 @@ public class MainSingleLoadingTest extends SingleLoadingTest {
 
     }
 
+    @Test
+    public void testSchemeRouting() {
+
+        Dali.setImageLoaderClass("file", SyncTestImageLoader.class);
+
+        try {
+
+            String fileUrl = "FILE:///sdcard/image.jpg";
+
+            Dali.with(RuntimeEnvironment.application)
+                    .load(fileUrl)
+                    .defer(false)
+                    .into(Mockito.mock(ImageView.class));
+
+            Dali.with(RuntimeEnvironment.application)
+                    .load(TEST_URL)
+                    .defer(false)
+                    .into(Mockito.mock(ImageView.class));
+
+            DaliLoader daliLoader = DaliLoader.getInstance();
+            SyncTestImageLoader fileLoader = (SyncTestImageLoader) daliLoader.getSchemeImageLoader("file");
+            SyncTestImageLoader mainLoader = (SyncTestImageLoader) daliLoader.getMainImageLoader();
+
+            Assert.assertNotSame(mainLoader, fileLoader);
+            Assert.assertEquals(fileUrl, fileLoader.getUrl());
+            Assert.assertEquals(TEST_URL, mainLoader.getUrl());
+            Assert.assertSame(mainLoader, daliLoader.getImageLoader("files:///sdcard/image.jpg"));
+
+        } finally {
+            Dali.setImageLoaderClass("file", null);
+        }
+
+    }
+
     @Test
     public void testMeasuredImageView() {
         TestActivity activity = createActivity();
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2017 Renat Sarymsakov.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reist.dali.main;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import io.reist.dali.BuildConfig;
+import io.reist.dali.Dali;
+import io.reist.dali.DaliCallback;
+import io.reist.dali.DaliLoader;
+import io.reist.dali.DaliUtils;
+import io.reist.dali.ImageLoader;
+import io.reist.dali.ImageRequest;
+import io.reist.dali.R;
+import io.reist.dali.ScaleMode;
+import io.reist.dali.drawables.DaliDrawable;
+
+/**
+ * Checks that an image which has outgrown its bitmap stays in the view while the sharper one
+ * is loaded
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+        constants = BuildConfig.class,
+        sdk = {Build.VERSION_CODES.JELLY_BEAN}
+)
+public class MainUpgradeTest {
+
+    private static final float UPGRADE_FACTOR = 1.5f;
+
+    private float upgradeFactor;
+
+    @Before
+    public void setUp() {
+        upgradeFactor = DaliLoader.getInstance().getUpgradeFactor();
+        Dali.setUpgradeFactor(UPGRADE_FACTOR);
+        Dali.setMainImageLoaderClass(PendingImageLoader.class);
+    }
+
+    @After
+    public void tearDown() {
+        Dali.setUpgradeFactor(upgradeFactor);
+    }
+
+    @Test
+    public void keepsImageUntilUpgraded() {
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        // the upgrade is posted to the view, so it has to be attached
+        ImageView view = new ImageView(activity);
+        activity.setContentView(view);
+
+        ImageRequest request = new ImageRequest(activity)
+                .url("0")
+                .defer(false)
+                .placeholder(R.drawable.placeholder)
+                .targetSize(4, 4);
+
+        DaliDrawable drawable = new DaliDrawable(
+                Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888),
+                ScaleMode.CENTER_INSIDE,
+                4,
+                4
+        );
+        view.setImageDrawable(drawable);
+        DaliUtils.setUpgradeListener(drawable, request, view, false);
+
+        drawable.setBounds(0, 0, 16, 16);
+        ShadowLooper.idleMainLooper();
+
+        PendingImageLoader imageLoader = (PendingImageLoader) DaliLoader.getInstance().getMainImageLoader();
+
+        Assert.assertNotNull("Not upgraded", imageLoader.request);
+        Assert.assertEquals("A placeholder replaces the image", 0, imageLoader.request.placeholderRes);
+        Assert.assertSame(drawable, view.getDrawable());
+
+    }
+
+    @Test
+    public void nativeSizeIsNotReloaded() {
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        ImageView view = new ImageView(activity);
+        activity.setContentView(view);
+
+        ImageRequest request = new ImageRequest(activity)
+                .url("0")
+                .defer(false)
+                .targetSize(4, 4);
+
+        // the source is as small as the bitmap, a reload would give the same image
+        DaliDrawable drawable = new DaliDrawable(
+                Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888),
+                ScaleMode.CENTER_INSIDE,
+                4,
+                4
+        );
+        drawable.setDownsampled(false);
+        view.setImageDrawable(drawable);
+        DaliUtils.setUpgradeListener(drawable, request, view, false);
+
+        drawable.setBounds(0, 0, 16, 16);
+        ShadowLooper.idleMainLooper();
+
+        PendingImageLoader imageLoader = (PendingImageLoader) DaliLoader.getInstance().getMainImageLoader();
+
+        Assert.assertNull("Reloaded", imageLoader.request);
+
+    }
+
+    @Test
+    public void regionIsNotReloaded() {
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        ImageView view = new ImageView(activity);
+        activity.setContentView(view);
+
+        // regions are decoded at the original size anyway
+        ImageRequest request = new ImageRequest(activity)
+                .url("0")
+                .defer(false)
+                .region(new Rect(0, 0, 4, 4))
+                .targetSize(4, 4);
+
+        DaliDrawable drawable = new DaliDrawable(
+                Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888),
+                new Rect(0, 0, 4, 4),
+                ScaleMode.CENTER_INSIDE,
+                4,
+                4
+        );
+        view.setImageDrawable(drawable);
+        DaliUtils.setUpgradeListener(drawable, request, view, false);
+
+        drawable.setBounds(0, 0, 16, 16);
+        ShadowLooper.idleMainLooper();
+
+        PendingImageLoader imageLoader = (PendingImageLoader) DaliLoader.getInstance().getMainImageLoader();
+
+        Assert.assertNull("Reloaded", imageLoader.request);
+
+    }
+
+    /**
+     * Never completes loads, remembers the last one
+     */
+    public static class PendingImageLoader implements ImageLoader {
+
+        private ImageRequest request;
+
+        @Override
+        public void load(@NonNull ImageRequest request, @NonNull View view, boolean background) {
+            this.request = request;
+        }
+
+        @Override
+        public void load(@NonNull ImageRequest request, @NonNull DaliCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel(@NonNull Object target) {}
+
+        @Override
+        public void cancelAll() {}
+
+    }
+
+}
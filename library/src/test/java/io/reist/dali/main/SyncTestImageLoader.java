@@ -17,6 +17,7 @@
 package io.reist.dali.main;
 
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.view.View;
@@ -27,6 +28,8 @@ import org.mockito.Mockito;
 import io.reist.dali.DaliCallback;
 import io.reist.dali.ImageLoader;
 import io.reist.dali.ImageRequest;
+import io.reist.dali.TestImageView;
+import io.reist.dali.TestUtils;
 
 /**
  * Created by Reist on 15.06.16.
@@ -38,7 +41,12 @@ public class SyncTestImageLoader implements ImageLoader {
     @Override
     public void load(@NonNull ImageRequest request, @NonNull View view, boolean background) {
         this.url = request.url;
-        if (view instanceof ImageView) {
+        if (view instanceof TestImageView) {
+            ((TestImageView) view).setImageDrawable(new BitmapDrawable(
+                    null,
+                    TestUtils.decode(TestUtils.urlToKey(request.url))
+            ));
+        } else if (view instanceof ImageView) {
             ((ImageView) view).setImageDrawable(Mockito.mock(Drawable.class));
         } else {
             throw new UnsupportedOperationException();